@@ -0,0 +1,45 @@
+package Controller;
+
+/**
+ * Построение, в котором группа роботов отправляется к точке:
+ * каждому роботу группы достаётся своё смещение от точки назначения
+ */
+public enum Formation {
+    /** Все роботы идут в одну точку */
+    POINT,
+    /** Квадратная сетка с центром в точке назначения */
+    GRID,
+    /** Окружность вокруг точки назначения */
+    RING;
+
+    /**
+     * Расстояние между соседними роботами построения
+     */
+    public static final double SPACING = 30;
+
+    /**
+     * Раскладывает точки построения вокруг (x, y)
+     * @param count размер группы
+     * @return точки парами (x, y), по одной на робота группы
+     */
+    public double[] place(int count, double x, double y) {
+        double[] targets = new double[count * 2];
+        int side = (int) Math.ceil(Math.sqrt(count));
+        double radius = Math.max(SPACING, count * SPACING / (2 * Math.PI));
+        for (int k = 0; k < count; k++) {
+            double offsetX = 0;
+            double offsetY = 0;
+            if (this == GRID) {
+                offsetX = (k % side - (side - 1) / 2.0) * SPACING;
+                offsetY = (k / side - (side - 1) / 2.0) * SPACING;
+            } else if (this == RING && count > 1) {
+                double angle = 2 * Math.PI * k / count;
+                offsetX = radius * Math.cos(angle);
+                offsetY = radius * Math.sin(angle);
+            }
+            targets[k * 2] = x + offsetX;
+            targets[k * 2 + 1] = y + offsetY;
+        }
+        return targets;
+    }
+}
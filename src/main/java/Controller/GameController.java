@@ -1,39 +1,195 @@
 package Controller;
 
-import javax.swing.*;
+import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import javax.swing.SwingUtilities;
 import log.Logger;
 import localization.LocaleManager;
+import model.InputRecorder;
+import model.Navigator;
+import model.ObstacleMap;
 import model.RobotModel;
+import model.RobotWorld;
+import model.SpatialGrid;
+import simulation.SimulationLoop;
+import view.Camera;
 import view.GameVisualizer;
+import view.Selection;
 
 /**
- * Контроллер игры, обрабатывающий клики мыши по игровому полю,
- * по клику мыши устанавливает новую цель для робота
+ * Контроллер игры, обрабатывающий клики мыши по игровому полю.
+ * Клик по роботу выбирает его, клик с Shift добавляет робота к выделению
+ * или убирает из него, рамка левой кнопкой выделяет всех роботов внутри.
+ * Клик по пустому месту отправляет выделенных роботов в эту точку
+ * в текущем построении одной групповой командой,
+ * клик правой кнопкой ставит или убирает препятствие.
+ * Перетаскивание средней или правой кнопкой сдвигает камеру, колесо мыши меняет масштаб;
+ * координаты кликов переводятся камерой в координаты мира.
+ * Мир продвигается циклом симуляции в отдельном потоке, поэтому
+ * команды передаются в цикл и применяются перед ближайшим тиком
  */
 public class GameController extends MouseAdapter {
-    private final RobotModel model;
+    /**
+     * Радиус, в котором клик попадает в робота
+     */
+    private static final double PICK_RADIUS = 10;
+
+    private final RobotWorld world;
+    private final SpatialGrid index;
+    private final Navigator navigator;
+    private final GameVisualizer view;
+    private final SimulationLoop loop;
+    private Selection selection;
+    private Formation formation = Formation.GRID;
+    private int[] found = new int[1024];
+    private int dragX;
+    private int dragY;
+    private Rectangle band;
 
-    public GameController(RobotModel model, GameVisualizer view) {
-        this.model = model;
+    public GameController(RobotModel model, SpatialGrid index, Navigator navigator,
+                          GameVisualizer view, SimulationLoop loop) {
+        this.world = model.getWorld();
+        this.index = index;
+        this.navigator = navigator;
+        this.view = view;
+        this.loop = loop;
+        this.selection = Selection.of(model.getId());
         view.addMouseListener(this);
-        Timer timer = new Timer(50, e -> {
-            model.updateRobotPosition();
-        });
-        timer.start();
+        view.addMouseMotionListener(this);
+        view.addMouseWheelListener(this);
+        view.setSimulationLoop(loop);
+        view.setSelection(selection);
+        loop.start();
     }
 
 
+    public Formation getFormation() {
+        return formation;
+    }
+
+    /**
+     * Задаёт построение, в котором группа отправляется к точке
+     */
+    public void setFormation(Formation formation) {
+        this.formation = formation;
+    }
+
     /**
-     * Обрабатывает щелчок мыши и устанавливает координаты новой
-     * цели для робота
+     * Обрабатывает щелчок мыши: переключает препятствие (правая кнопка),
+     * выбирает робота под курсором или отправляет выделенных роботов к точке
      * @param e the event to be processed
      */
     @Override
     public void mouseClicked(MouseEvent e) {
-        model.setTarget(e.getX(), e.getY());
+        Camera camera = view.getCamera();
+        double x = camera.toWorldX(e.getX());
+        double y = camera.toWorldY(e.getY());
+        if (SwingUtilities.isRightMouseButton(e)) {
+            ObstacleMap map = navigator.getMap();
+            loop.execute(() -> {
+                map.toggle(x, y);
+                InputRecorder recorder = world.getInputRecorder();
+                if (recorder != null) {
+                    recorder.obstacleToggled(world.getTick(), x, y);
+                }
+            });
+            return;
+        }
+        int hit = index.queryPoint(x, y, PICK_RADIUS / Math.min(1, camera.getZoom()));
+        if (hit >= 0) {
+            select(e.isShiftDown() ? selection.toggle(hit) : Selection.of(hit));
+            Logger.debug(LocaleManager.getInstance().getString("robot.selected") + " " + hit);
+            return;
+        }
+        int count = selection.size();
+        if (count == 0) {
+            return;
+        }
+        if (count == 1) {
+            int robot = selection.get(0);
+            loop.execute(() -> navigator.navigate(robot, x, y));
+            Logger.debug(String.format(
+                    LocaleManager.getInstance().getString("coordinates.changed") + " X:%.1f, Y:%.1f", x, y));
+            return;
+        }
+        int[] robots = selection.toArray();
+        double[] targets = formation.place(count, x, y);
+        loop.execute(() -> navigator.navigateGroup(robots, count, targets));
         Logger.debug(String.format(
-                LocaleManager.getInstance().getString("coordinates.changed") + " X:%d, Y:%d" , e.getX(), e.getY()));
+                LocaleManager.getInstance().getString("group.sent") + " %d, X:%.1f, Y:%.1f", count, x, y));
+    }
+
+    @Override
+    public void mousePressed(MouseEvent e) {
+        dragX = e.getX();
+        dragY = e.getY();
+    }
+
+    /**
+     * Левой кнопкой тянет рамку выделения, средней или правой - сдвигает камеру вслед за мышью
+     */
+    @Override
+    public void mouseDragged(MouseEvent e) {
+        if (SwingUtilities.isLeftMouseButton(e)) {
+            band = new Rectangle(Math.min(dragX, e.getX()), Math.min(dragY, e.getY()),
+                    Math.abs(e.getX() - dragX), Math.abs(e.getY() - dragY));
+            view.setRubberBand(band);
+            return;
+        }
+        if (SwingUtilities.isMiddleMouseButton(e) || SwingUtilities.isRightMouseButton(e)) {
+            view.pan(e.getX() - dragX, e.getY() - dragY);
+            dragX = e.getX();
+            dragY = e.getY();
+        }
+    }
+
+    /**
+     * Завершает рамку: выделяет роботов внутри неё, а с Shift добавляет их к выделению
+     */
+    @Override
+    public void mouseReleased(MouseEvent e) {
+        if (band == null) {
+            return;
+        }
+        Camera camera = view.getCamera();
+        double minX = camera.toWorldX(band.x);
+        double minY = camera.toWorldY(band.y);
+        double maxX = camera.toWorldX(band.x + band.width);
+        double maxY = camera.toWorldY(band.y + band.height);
+        band = null;
+        view.setRubberBand(null);
+        int count = index.queryRect(minX, minY, maxX, maxY, found);
+        if (count > found.length) {
+            found = new int[count];
+            count = Math.min(found.length, index.queryRect(minX, minY, maxX, maxY, found));
+        }
+        select(e.isShiftDown() ? selection.with(found, count) : Selection.of(found, count));
+        Logger.debug(LocaleManager.getInstance().getString("robots.selected") + " " + selection.size());
+    }
+
+    private void select(Selection selection) {
+        this.selection = selection;
+        view.setSelection(selection);
+    }
+
+    /**
+     * Приближает (колесо от себя) или отдаляет поле вокруг курсора
+     */
+    @Override
+    public void mouseWheelMoved(MouseWheelEvent e) {
+        int steps = e.getWheelRotation();
+        if (steps != 0) {
+            view.zoomAt(e.getX(), e.getY(), -steps);
+        }
+    }
+
+    /**
+     * Останавливает цикл симуляции и потоки планирования маршрутов
+     */
+    public void stop() {
+        loop.stop();
+        navigator.shutdown();
     }
 }
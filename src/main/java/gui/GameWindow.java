@@ -1,23 +1,80 @@
 package gui;
 
+import Controller.Formation;
 import Controller.GameController;
 import view.GameVisualizer;
+import model.KinematicsKernels;
+import model.Navigator;
+import model.ObstacleMap;
+import model.ParallelTickEngine;
 import model.RobotModel;
+import model.RobotWorld;
+import model.SpatialGrid;
+import model.TrajectoryHistory;
 import localization.LocaleManager;
+import log.Logger;
+import simulation.InputJournal;
+import simulation.SimulationLoop;
 import state.WindowAction;
+import state.WorldCheckpoint;
 
 import javax.swing.*;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
 
 public class GameWindow extends BaseWindow implements WindowAction {
+    /**
+     * Системное свойство с путём файла, в который пишется журнал входов
+     */
+    public static final String JOURNAL_PROPERTY = "robots.journal";
+    /**
+     * Системное свойство с путём сохранения мира, с которого начинается игра
+     */
+    public static final String CHECKPOINT_PROPERTY = "robots.checkpoint";
+
     private final GameVisualizer m_visualizer;
+    private final GameController controller;
+    private final InputJournal journal;
+    private final SimulationLoop loop;
+    public final RobotWorld world;
     public final RobotModel model;
+    public final SpatialGrid index;
 
     public GameWindow() {
         super(LocaleManager.getInstance().getString("game.title"), 400, 400, 50, 50);
-        model = new RobotModel();
-        m_visualizer = new GameVisualizer(model);
-        new GameController(model, m_visualizer);
+        world = new RobotWorld();
+        world.setTickEngine(new ParallelTickEngine());
+        journal = openJournal(world);
+        world.setInputRecorder(journal);
+        model = world.robot(world.addRobot(100, 100));
+        String checkpoint = System.getProperty(CHECKPOINT_PROPERTY);
+        if (checkpoint != null && !checkpoint.isBlank()) {
+            if (journal != null) {
+                Logger.error(LocaleManager.getInstance().getString("checkpoint.journal") + " " + checkpoint);
+            } else {
+                restoreCheckpoint(Path.of(checkpoint));
+            }
+        }
+        index = new SpatialGrid(world, 64);
+        ObstacleMap obstacles = new ObstacleMap(20, 100, 100);
+        Navigator navigator = new Navigator(world, obstacles, 1024,
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        world.enableSnapshots();
+        m_visualizer = new GameVisualizer(world);
+        m_visualizer.setObstacleMap(obstacles);
+        m_visualizer.setTrajectoryHistory(new TrajectoryHistory(world, 256, 2, 4.0));
+        loop = new SimulationLoop(world);
+        loop.setTickTimer(m_visualizer.getHud()::recordTick);
+        controller = new GameController(model, index, navigator, m_visualizer, loop);
+        addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosed(InternalFrameEvent e) {
+                stopSimulation();
+            }
+        });
 
         JPanel panel = new JPanel(new BorderLayout());
         panel.add(m_visualizer, BorderLayout.CENTER);
@@ -25,6 +82,83 @@ public class GameWindow extends BaseWindow implements WindowAction {
         pack();
     }
 
+    /**
+     * Открывает журнал входов, если задано свойство {@value #JOURNAL_PROPERTY}.
+     * Мир с журналом считается ядром для записи, чтобы воспроизведение совпало побитово
+     */
+    private static InputJournal openJournal(RobotWorld world) {
+        String path = System.getProperty(JOURNAL_PROPERTY);
+        if (path == null || path.isBlank()) {
+            return null;
+        }
+        world.setKernel(KinematicsKernels.forRecording());
+        try {
+            return new InputJournal(Path.of(path), world.getKernel().name());
+        } catch (IOException e) {
+            Logger.error(LocaleManager.getInstance().getString("journal.open.error") + " " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Сохраняет мир в файл. Сохранение выполняется в потоке симуляции перед ближайшим тиком
+     */
+    public void saveCheckpoint(Path file) {
+        loop.execute(() -> {
+            try {
+                WorldCheckpoint.save(world, file);
+                Logger.debug(LocaleManager.getInstance().getString("checkpoint.saved") + " " + file);
+            } catch (IOException | RuntimeException e) {
+                Logger.error(LocaleManager.getInstance().getString("checkpoint.error") + " " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Загружает мир из файла в потоке симуляции перед ближайшим тиком.
+     * Пока пишется журнал входов, загрузка отклоняется: журнал не хранит
+     * восстановленного состояния, и его воспроизведение разошлось бы с игрой
+     */
+    public void loadCheckpoint(Path file) {
+        if (journal != null) {
+            Logger.error(LocaleManager.getInstance().getString("checkpoint.journal") + " " + file);
+            return;
+        }
+        loop.execute(() -> restoreCheckpoint(file));
+    }
+
+    /**
+     * Пишется ли журнал входов; в этом случае мир нельзя загрузить из файла
+     */
+    public boolean isRecordingJournal() {
+        return journal != null;
+    }
+
+    private void restoreCheckpoint(Path file) {
+        try {
+            WorldCheckpoint.load(world, file);
+            Logger.debug(LocaleManager.getInstance().getString("checkpoint.loaded") + " " + file);
+        } catch (IOException | RuntimeException e) {
+            Logger.error(LocaleManager.getInstance().getString("checkpoint.error") + " " + e.getMessage());
+        }
+    }
+
+    /**
+     * Останавливает симуляцию и завершает журнал входов итоговым хешем.
+     * Повторный вызов ничего не делает
+     */
+    public void stopSimulation() {
+        controller.stop();
+        m_visualizer.stopRendering();
+        if (journal != null) {
+            try {
+                journal.finish(world);
+            } catch (IOException e) {
+                Logger.error(LocaleManager.getInstance().getString("journal.write.error") + " " + e.getMessage());
+            }
+        }
+    }
+
     @Override
     public void updateLocale() {
         setTitle(LocaleManager.getInstance().getString("game.title"));
@@ -36,6 +170,31 @@ public class GameWindow extends BaseWindow implements WindowAction {
         return "GameWindow";
     }
 
+    /**
+     * Цикл симуляции игры: пауза, шаг и множитель скорости
+     */
+    public SimulationLoop getSimulationLoop() {
+        return loop;
+    }
+
+    public Formation getFormation() {
+        return controller.getFormation();
+    }
+
+    /**
+     * Задаёт построение, в котором выделенная группа отправляется к точке
+     */
+    public void setFormation(Formation formation) {
+        controller.setFormation(formation);
+    }
+
+    /**
+     * Показывает или скрывает оверлей производительности поля
+     */
+    public void togglePerformanceHud() {
+        m_visualizer.toggleHud();
+    }
+
     public void updateGame() {
         m_visualizer.repaint();
     }
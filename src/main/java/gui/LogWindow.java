@@ -9,10 +9,12 @@ import state.WindowAction;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.EventQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LogWindow extends BaseWindow implements LogChangeListener, WindowAction{
     private final LogWindowSource m_logSource;
     private final TextArea m_logContent;
+    private final AtomicBoolean m_updatePending = new AtomicBoolean();
 
     public LogWindow(LogWindowSource logSource) {
         super(LocaleManager.getInstance().getString("log.title"), 300, 800, 10, 10);
@@ -47,9 +49,18 @@ public class LogWindow extends BaseWindow implements LogChangeListener, WindowAc
         m_logContent.invalidate();
     }
 
+    /**
+     * Сообщения из разных потоков схлопываются в одно обновление окна:
+     * пока обновление стоит в очереди EDT, новое не ставится
+     */
     @Override
     public void onLogChanged() {
-        EventQueue.invokeLater(this::updateLogContent);
+        if (m_updatePending.compareAndSet(false, true)) {
+            EventQueue.invokeLater(() -> {
+                m_updatePending.set(false);
+                updateLogContent();
+            });
+        }
     }
 
     @Override
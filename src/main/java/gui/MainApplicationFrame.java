@@ -13,9 +13,11 @@ import java.util.Map;
 
 import javax.swing.*;
 
+import Controller.Formation;
 import localization.LocaleChangeListener;
 import localization.LocaleManager;
 import log.Logger;
+import simulation.SimulationLoop;
 import state.WindowAction;
 import state.WindowSaver;
 
@@ -176,6 +178,7 @@ public class MainApplicationFrame extends JFrame implements WindowAction, Locale
         menuBar.add(generateLookAndFeelMenu());
         menuBar.add(generateTestMenu());
         menuBar.add(generateDocumentMenu());
+        menuBar.add(generateSimulationMenu());
         menuBar.add(generateLocalizationMenu());
         return menuBar;
     }
@@ -187,6 +190,8 @@ public class MainApplicationFrame extends JFrame implements WindowAction, Locale
                 .setAccessibleDescription(LocaleManager.getInstance().getString("menu.view.desc"));
         lookAndFeelMenu.add(createSystemLookAndFeelMenuButton());
         lookAndFeelMenu.add(createCrossPlatformLookAndFeelMenuButton());
+        lookAndFeelMenu.addSeparator();
+        lookAndFeelMenu.add(createPerformanceHudButton());
         return lookAndFeelMenu;
     }
 
@@ -199,6 +204,13 @@ public class MainApplicationFrame extends JFrame implements WindowAction, Locale
         return systemLookAndFeelMenu;
     }
 
+    private JMenuItem createPerformanceHudButton() {
+        JMenuItem menuItem = new JMenuItem(LocaleManager.getInstance().getString("menu.view.hud"), KeyEvent.VK_P);
+        menuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0));
+        menuItem.addActionListener(event -> gameWindow.togglePerformanceHud());
+        return menuItem;
+    }
+
     private JMenuItem createCrossPlatformLookAndFeelMenuButton() {
         JMenuItem crossplatformLookAndMenuButton = new JMenuItem(LocaleManager.getInstance().getString("menu.view.universal"), KeyEvent.VK_U);
         crossplatformLookAndMenuButton.addActionListener(event -> {
@@ -248,10 +260,89 @@ public class MainApplicationFrame extends JFrame implements WindowAction, Locale
     private JMenu generateDocumentMenu() {
         JMenu menu = new JMenu(LocaleManager.getInstance().getString("menu.app"));
         menu.setMnemonic(KeyEvent.VK_D);
+        menu.add(createSaveCheckpointButton());
+        menu.add(createLoadCheckpointButton());
+        menu.addSeparator();
         menu.add(createQuitButton());
         return menu;
     }
 
+    private JMenu generateSimulationMenu() {
+        SimulationLoop loop = gameWindow.getSimulationLoop();
+        JMenu menu = new JMenu(LocaleManager.getInstance().getString("menu.simulation"));
+        menu.setMnemonic(KeyEvent.VK_S);
+
+        JCheckBoxMenuItem pause = new JCheckBoxMenuItem(LocaleManager.getInstance().getString("menu.simulation.pause"),
+                loop.isPaused());
+        pause.setMnemonic(KeyEvent.VK_P);
+        pause.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_PAUSE, 0));
+        pause.addActionListener(event -> {
+            if (pause.isSelected()) {
+                loop.pause();
+            } else {
+                loop.resume();
+            }
+        });
+        menu.add(pause);
+
+        JMenuItem step = new JMenuItem(LocaleManager.getInstance().getString("menu.simulation.step"), KeyEvent.VK_T);
+        step.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F6, 0));
+        step.addActionListener(event -> {
+            loop.step();
+            pause.setSelected(true);
+        });
+        menu.add(step);
+        menu.addSeparator();
+
+        JMenu speedMenu = new JMenu(LocaleManager.getInstance().getString("menu.simulation.speed"));
+        ButtonGroup speeds = new ButtonGroup();
+        for (double speed = SimulationLoop.MIN_SPEED; speed <= SimulationLoop.MAX_SPEED; speed *= 2) {
+            double value = speed;
+            String label = value < 1 ? value + "x" : (int) value + "x";
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(label, loop.getSpeed() == value);
+            item.addActionListener(event -> loop.setSpeed(value));
+            speeds.add(item);
+            speedMenu.add(item);
+        }
+        menu.add(speedMenu);
+
+        JMenu formationMenu = new JMenu(LocaleManager.getInstance().getString("menu.simulation.formation"));
+        ButtonGroup formations = new ButtonGroup();
+        for (Formation formation : Formation.values()) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(
+                    LocaleManager.getInstance().getString("formation." + formation.name().toLowerCase()),
+                    gameWindow.getFormation() == formation);
+            item.addActionListener(event -> gameWindow.setFormation(formation));
+            formations.add(item);
+            formationMenu.add(item);
+        }
+        menu.add(formationMenu);
+        return menu;
+    }
+
+    private JMenuItem createSaveCheckpointButton() {
+        JMenuItem menuItem = new JMenuItem(LocaleManager.getInstance().getString("menu.checkpoint.save"), KeyEvent.VK_S);
+        menuItem.addActionListener(event -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                gameWindow.saveCheckpoint(chooser.getSelectedFile().toPath());
+            }
+        });
+        return menuItem;
+    }
+
+    private JMenuItem createLoadCheckpointButton() {
+        JMenuItem menuItem = new JMenuItem(LocaleManager.getInstance().getString("menu.checkpoint.load"), KeyEvent.VK_L);
+        menuItem.setEnabled(!gameWindow.isRecordingJournal());
+        menuItem.addActionListener(event -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                gameWindow.loadCheckpoint(chooser.getSelectedFile().toPath());
+            }
+        });
+        return menuItem;
+    }
+
     private JMenuItem createQuitButton() {
         JMenuItem menuItem = new JMenuItem(LocaleManager.getInstance().getString("menu.exit"));
         menuItem.setMnemonic(KeyEvent.VK_Q);
@@ -271,6 +362,7 @@ public class MainApplicationFrame extends JFrame implements WindowAction, Locale
         );
 
         if (response == JOptionPane.YES_OPTION) {
+            gameWindow.stopSimulation();
             saveWindowStateBeforeExit();
             LocaleManager.getInstance().saveCurrentLocale();
             try {
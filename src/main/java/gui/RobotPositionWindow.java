@@ -1,22 +1,31 @@
 package gui;
 
+import model.RobotListener;
 import model.RobotModel;
+import model.RobotWorld;
+import model.WorldSnapshot;
 import localization.LocaleManager;
 import state.WindowAction;
 
 import javax.swing.*;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
 import java.awt.*;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
+import java.awt.EventQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  *Окно с текущей позицией робота(координаты)
- * Реагирует на изменения позиции робота через механизм PropertyChangeListener
+ * Реагирует на изменения позиции робота через механизм RobotListener
  */
-public class RobotPositionWindow extends BaseWindow implements WindowAction, PropertyChangeListener {
+public class RobotPositionWindow extends BaseWindow implements WindowAction, RobotListener {
     private final JTextArea textArea;
-    private double lastX;
-    private double lastY;
+    private final RobotWorld world;
+    private final int robotId;
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
+    private final Runnable updateTask = this::applyPendingPosition;
+    private volatile double lastX;
+    private volatile double lastY;
 
     public RobotPositionWindow(RobotModel model) {
         super(LocaleManager.getInstance().getString("robot.position.format"), 300, 200, 100, 100);
@@ -24,11 +33,17 @@ public class RobotPositionWindow extends BaseWindow implements WindowAction, Pro
         textArea.setEditable(false);
         add(new JScrollPane(textArea), BorderLayout.CENTER);
         pack();
-        model.addPropertyChangeListener(this);
-        updateText(model.getX(), model.getY());
-        updateText(model.getX(), model.getY());
-        lastX = model.getX();
-        lastY = model.getY();
+        world = model.getWorld();
+        robotId = model.getId();
+        world.addListener(this);
+        addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosed(InternalFrameEvent e) {
+                world.removeListener(RobotPositionWindow.this);
+            }
+        });
+        readPosition();
+        updateText(lastX, lastY);
     }
 
 
@@ -51,18 +66,37 @@ public class RobotPositionWindow extends BaseWindow implements WindowAction, Pro
     }
 
     /**
-     *Обрабатывает событие изменения координат робота,
-     *при получении события с именем "position" обновляет отображение координат
-     * @param evt Объект PropertyChangeEvent, описывающий источник события
-     *и свойство, которое изменилось.
+     *Обрабатывает изменение координат робота.
+     *Событие приходит из потока симуляции: обновление текста ставится в EDT,
+     *если ещё не было запланировано, так что несколько тиков подряд
+     *сливаются в одно обновление
      */
     @Override
-    public void propertyChange(PropertyChangeEvent evt) {
-        if ("position".equals(evt.getPropertyName())) {
-            double[] newPos = (double[]) evt.getNewValue();
-            lastX = newPos[0];
-            lastY = newPos[1];
-            updateText(lastX, lastY);
+    public void onPositionChanged(int id, double x, double y, double direction) {
+        if (id != robotId) {
+            return;
+        }
+        if (updateScheduled.compareAndSet(false, true)) {
+            EventQueue.invokeLater(updateTask);
+        }
+    }
+
+    private void applyPendingPosition() {
+        updateScheduled.set(false);
+        readPosition();
+        updateText(lastX, lastY);
+    }
+
+    /**
+     *Читает координаты из последнего снимка мира, в котором X и Y
+     *относятся к одному тику
+     */
+    private void readPosition() {
+        try (WorldSnapshot snapshot = world.acquireSnapshot()) {
+            if (snapshot != null && robotId < snapshot.size()) {
+                lastX = snapshot.getX(robotId);
+                lastY = snapshot.getY(robotId);
+            }
         }
     }
 
@@ -5,9 +5,15 @@ import java.awt.Frame;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
+import simulation.HeadlessRunner;
+
 public class RobotsProgram
 {
     public static void main(String[] args) {
+      if (args.length > 0 && "--headless".equals(args[0])) {
+        HeadlessRunner.main(args);
+        return;
+      }
       try {
         UIManager.setLookAndFeel("javax.swing.plaf.nimbus.NimbusLookAndFeel");
 //        UIManager.setLookAndFeel("javax.swing.plaf.metal.MetalLookAndFeel");
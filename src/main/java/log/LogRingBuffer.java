@@ -0,0 +1,127 @@
+package log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Кольцевой буфер без блокировок для многих писателей, по образцу Disruptor.
+ * Слоты выделены заранее, их число - степень двойки не меньше ёмкости.
+ * Писатель получает порядковый номер одним getAndIncrement, пишет элемент
+ * в слот номер & mask и публикует номер в слоте последним.
+ * Пока слот пишется, в нём стоит метка BUSY, поэтому читатель, увидевший
+ * один и тот же номер до и после чтения элемента, получил целую запись.
+ * Читатели не блокируют писателей: они собирают снимок последних
+ * capacity опубликованных элементов, пропуская ещё не дописанные.
+ * Писатели никого не ждут: самые старые элементы просто перезаписываются,
+ * а писатель, который застал свой слот занятым другим писателем (это возможно,
+ * только если тот отстал на целый круг кольца), отбрасывает свой элемент
+ * вместо ожидания. Поэтому запись не блокируется, даже если поток
+ * вытеснен посреди записи, а при таком обгоне сообщение может потеряться
+ * @param <T> тип элементов, хранящихся в буфере
+ */
+public class LogRingBuffer<T> implements Iterable<T> {
+    private static final long EMPTY = -1;
+    private static final long BUSY = Long.MIN_VALUE;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<T> values;
+    private final AtomicLongArray published;
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * @param capacity сколько последних элементов видно читателям
+     */
+    public LogRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость должна быть положительной: " + capacity);
+        }
+        this.capacity = capacity;
+        int slots = Integer.highestOneBit(capacity);
+        if (slots < capacity) {
+            slots <<= 1;
+        }
+        this.mask = slots - 1;
+        this.values = new AtomicReferenceArray<>(slots);
+        this.published = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            published.set(i, EMPTY);
+        }
+    }
+
+    /**
+     * Добавляет элемент; самый старый элемент вытесняется. Элемент отбрасывается,
+     * если слот уже занят более новым элементом или его сейчас пишет другой писатель
+     * @return true, если элемент опубликован
+     */
+    public boolean add(T item) {
+        long sequence = next.getAndIncrement();
+        int slot = (int) (sequence & mask);
+        long current = published.get(slot);
+        if (current == BUSY || current > sequence || !published.compareAndSet(slot, current, BUSY)) {
+            return false;
+        }
+        values.set(slot, item);
+        published.set(slot, sequence);
+        return true;
+    }
+
+    /**
+     * Число опубликованных элементов среди последних capacity номеров,
+     * то есть размер снимка, взятого в тот же момент
+     */
+    public int size() {
+        long end = next.get();
+        int visible = 0;
+        for (long sequence = Math.max(0, end - capacity); sequence < end; sequence++) {
+            if (published.get((int) (sequence & mask)) == sequence) {
+                visible++;
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * Снимок видимых элементов от самого старого к новому
+     */
+    public List<T> snapshot() {
+        long end = next.get();
+        long start = Math.max(0, end - capacity);
+        List<T> items = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) (sequence & mask);
+            if (published.get(slot) != sequence) {
+                continue;
+            }
+            T item = values.get(slot);
+            if (published.get(slot) == sequence) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Возвращает подмножество элементов снимка, начиная с индекса startFrom
+     * и максимум count элементов, или пустой список, если startFrom вне диапазона
+     */
+    public List<T> range(int startFrom, int count) {
+        List<T> items = snapshot();
+        if (startFrom < 0 || startFrom >= items.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(items.subList(startFrom, Math.min(items.size(), startFrom + Math.max(0, count))));
+    }
+
+    /**
+     * Итератор по снимку, взятому в момент вызова
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return snapshot().iterator();
+    }
+}
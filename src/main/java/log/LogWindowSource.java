@@ -1,34 +1,34 @@
 package log;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Источник сообщений для окна лога с поддержкой подписки на изменения.
- * Хранит сообщения в кольцевом буфере фиксированного размера и уведомляет
+ * Хранит сообщения в кольцевом буфере без блокировок и уведомляет
  * зарегистрированных слушателей о новых сообщениях.
+ * Запись из любого потока не берёт мониторов: сообщение публикуется в буфер
+ * атомарными операциями, а список слушателей обходится по копии,
+ * поэтому писатели не конкурируют ни друг с другом, ни с читающим EDT.
  */
 public class LogWindowSource {
-    private final CircularBuffer<LogEntry> m_messages;
+    private final LogRingBuffer<LogEntry> m_messages;
     private final List<WeakReference<LogChangeListener>> m_listeners;
 
     /**
      * Создает новый источник лога с указанной емкостью.
      */
     public LogWindowSource(int queueLength) {
-        m_messages = new CircularBuffer<>(queueLength);
-        m_listeners = new ArrayList<>();
+        m_messages = new LogRingBuffer<>(queueLength);
+        m_listeners = new CopyOnWriteArrayList<>();
     }
 
     /**
      * Добавляет новое сообщение в лог.
      */
     public void append(LogEntry entry) {
-        synchronized (this) {
-            m_messages.add(entry);
-        }
+        m_messages.add(entry);
         notifyListeners();
     }
 
@@ -45,6 +45,7 @@ public class LogWindowSource {
 
     /**
      * Регистрирует слушателя изменений лога.
+     * Монитор списка берут только регистрация и её отмена, но не запись.
      */
     public void registerListener(LogChangeListener listener) {
         synchronized (m_listeners) {
@@ -63,13 +64,10 @@ public class LogWindowSource {
      */
     public void unregisterListener(LogChangeListener listener) {
         synchronized (m_listeners) {
-            Iterator<WeakReference<LogChangeListener>> it = m_listeners.iterator();
-            while (it.hasNext()) {
-                LogChangeListener l = it.next().get();
-                if (l == null || l == listener) {
-                    it.remove();
-                }
-            }
+            m_listeners.removeIf(ref -> {
+                LogChangeListener l = ref.get();
+                return l == null || l == listener;
+            });
         }
     }
 
@@ -77,42 +75,33 @@ public class LogWindowSource {
      * Возвращает текущее количество сообщений в логе.
      */
     public int size() {
-        synchronized (this) {
-            return m_messages.size();
-        }
+        return m_messages.size();
     }
 
     /**
      * Возвращает диапазон сообщений из лога.
      */
     public Iterable<LogEntry> range(int startFrom, int count) {
-        synchronized (this) {
-            return m_messages.range(startFrom, count);
-        }
+        return m_messages.range(startFrom, count);
     }
 
     /**
-     * Возвращает все сообщения в логе.
+     * Возвращает снимок всех сообщений в логе.
      */
     public Iterable<LogEntry> all() {
-        synchronized (this) {
-            return m_messages;
-        }
+        return m_messages.snapshot();
     }
 
     /**
      * Уведомляет всех активных слушателей об изменении лога.
      */
     private void notifyListeners() {
-        synchronized (m_listeners) {
-            Iterator<WeakReference<LogChangeListener>> it = m_listeners.iterator();
-            while (it.hasNext()) {
-                LogChangeListener listener = it.next().get();
-                if (listener != null) {
-                    listener.onLogChanged();
-                } else {
-                    it.remove();
-                }
+        for (WeakReference<LogChangeListener> ref : m_listeners) {
+            LogChangeListener listener = ref.get();
+            if (listener != null) {
+                listener.onLogChanged();
+            } else {
+                m_listeners.remove(ref);
             }
         }
     }
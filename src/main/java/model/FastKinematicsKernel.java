@@ -0,0 +1,105 @@
+package model;
+
+/**
+ * Быстрое ядро кинематики с приближённой тригонометрией.
+ * Вместо Math.atan2, Math.sin и Math.cos используются многочлены,
+ * а угол нормализуется без циклов одним вычитанием кратного 2pi.
+ * Границы ошибки:
+ * - atan2: не больше 2e-8 рад (многочлен Абрамовица-Стиган 4.4.49 на [0, 1]);
+ * - sin и cos: не больше 6e-8 (ряд Тейлора до x^11 на [-pi/2, pi/2]).
+ * Траектории отличаются от эталонного ядра на эти величины, а у роботов,
+ * отклонение которых лежит на самой границе 0.1, может отличаться решение
+ * о повороте, поэтому ядро не подходит для побитового воспроизведения
+ */
+public class FastKinematicsKernel implements KinematicsKernel {
+    public static final String NAME = "fast";
+
+    private static final double PI = Math.PI;
+    private static final double HALF_PI = Math.PI / 2;
+    private static final double TWO_PI = 2 * Math.PI;
+    private static final double INV_TWO_PI = 1 / TWO_PI;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int step(double[] x, double[] y, double[] direction, double[] targetX, double[] targetY,
+                    boolean[] moved, int from, int to) {
+        int movedCount = 0;
+        for (int i = from; i < to; i++) {
+            double dx = targetX[i] - x[i];
+            double dy = targetY[i] - y[i];
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if (distance < 0.5) {
+                moved[i] = false;
+                continue;
+            }
+            moved[i] = true;
+            movedCount++;
+
+            double heading = direction[i];
+            double angleDiff = wrapAngle(atan2(dy, dx) - heading);
+            if (Math.abs(angleDiff) > 0.1) {
+                direction[i] = heading + Math.copySign(0.05, angleDiff);
+            } else {
+                double speed = Math.min(2.0, distance);
+                double wrapped = wrapAngle(heading);
+                x[i] += speed * cos(wrapped);
+                y[i] += speed * sin(wrapped);
+            }
+        }
+        return movedCount;
+    }
+
+    /**
+     * Приводит угол к [-pi, pi) без ветвлений и циклов
+     */
+    static double wrapAngle(double angle) {
+        return angle - TWO_PI * Math.floor((angle + PI) * INV_TWO_PI);
+    }
+
+    /**
+     * Приближённый atan2 с ошибкой не больше 2e-8 рад
+     */
+    static double atan2(double y, double x) {
+        double ax = Math.abs(x);
+        double ay = Math.abs(y);
+        double max = Math.max(ax, ay);
+        if (max == 0) {
+            return 0;
+        }
+        double ratio = Math.min(ax, ay) / max;
+        double angle = atanUnit(ratio);
+        angle = ay > ax ? HALF_PI - angle : angle;
+        angle = x < 0 ? PI - angle : angle;
+        return Math.copySign(angle, y);
+    }
+
+    /**
+     * atan на отрезке [0, 1]
+     */
+    private static double atanUnit(double t) {
+        double t2 = t * t;
+        return t * (0.9999993329 + t2 * (-0.3332985605 + t2 * (0.1994653599 + t2 * (-0.1390853351
+                + t2 * (0.0964200441 + t2 * (-0.0559098861 + t2 * (0.0218612288 + t2 * -0.0040540580)))))));
+    }
+
+    /**
+     * Приближённый синус угла из [-pi, pi] с ошибкой не больше 6e-8
+     */
+    static double sin(double angle) {
+        double reduced = Math.abs(angle) > HALF_PI ? Math.copySign(PI, angle) - angle : angle;
+        double r2 = reduced * reduced;
+        return reduced * (1 + r2 * (-1.0 / 6 + r2 * (1.0 / 120 + r2 * (-1.0 / 5040
+                + r2 * (1.0 / 362880 + r2 * (-1.0 / 39916800))))));
+    }
+
+    /**
+     * Приближённый косинус угла из [-pi, pi] с ошибкой не больше 6e-8
+     */
+    static double cos(double angle) {
+        return sin(wrapAngle(angle + HALF_PI));
+    }
+}
@@ -0,0 +1,58 @@
+package model;
+
+/**
+ * Получатель входных воздействий на мир, например журнал для воспроизведения.
+ * Методы вызываются в потоке, продвигающем мир, в момент применения входа
+ * и в том порядке, в каком входы меняют состояние. Номер тика - число тиков,
+ * выполненных миром до применения входа
+ */
+public interface InputRecorder {
+    void robotAdded(long tick, int robotId, double x, double y);
+
+    void targetSet(long tick, int robotId, double targetX, double targetY);
+
+    /**
+     * Группе роботов назначены цели одной операцией.
+     * По умолчанию записывается как отдельные targetSet
+     * @param targets цели парами (x, y) в порядке robotIds
+     */
+    default void targetsSet(long tick, int[] robotIds, int count, double[] targets) {
+        for (int k = 0; k < count; k++) {
+            targetSet(tick, robotIds[k], targets[k * 2], targets[k * 2 + 1]);
+        }
+    }
+
+    /**
+     * Точки добавлены в конец очереди робота
+     * @param points точки парами (x, y)
+     * @param offset индекс первой пары
+     * @param count количество пар
+     */
+    void waypointsAppended(long tick, int robotId, double[] points, int offset, int count);
+
+    void waypointsCleared(long tick, int robotId);
+
+    /**
+     * Применён маршрут, рассчитанный планировщиком
+     * @param points точки маршрута парами (x, y)
+     */
+    void routeApplied(long tick, int robotId, double[] points);
+
+    /**
+     * Мир или один робот перемотан на заданное число тиков
+     * @param robotId робот или -1, если перематывается весь мир
+     */
+    void advanced(long tick, int robotId, long ticks);
+
+    /**
+     * Один робот продвинут на шаг вне общего тика
+     */
+    void robotStepped(long tick, int robotId);
+
+    /**
+     * Переключено препятствие в точке (x, y). На состояние мира не влияет,
+     * но нужно, чтобы журнал отражал все действия пользователя
+     */
+    default void obstacleToggled(long tick, double x, double y) {
+    }
+}
@@ -0,0 +1,24 @@
+package model;
+
+/**
+ * Ядро кинематики: делает один шаг для диапазона роботов, заданных колонками мира.
+ * Шаг робота - поворот к цели на 0.05 рад, пока отклонение больше 0.1,
+ * затем движение со скоростью min(2, расстояние); робот ближе 0.5 к цели стоит.
+ * Ядро пишет только в слоты своего диапазона, поэтому разные диапазоны
+ * можно обрабатывать параллельно
+ */
+public interface KinematicsKernel {
+
+    /**
+     * Имя ядра, по которому его выбирают при запуске
+     */
+    String name();
+
+    /**
+     * Делает один шаг для роботов [from, to)
+     * @param moved moved[i] получает true, если робот i повернулся или сдвинулся
+     * @return количество сдвинувшихся роботов
+     */
+    int step(double[] x, double[] y, double[] direction, double[] targetX, double[] targetY,
+             boolean[] moved, int from, int to);
+}
@@ -0,0 +1,112 @@
+package model;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Выбор ядра кинематики при запуске.
+ * Ядро задаётся системным свойством {@value #PROPERTY}: "scalar" (или "exact"),
+ * "fast", "vector" или "auto" (по умолчанию). В режиме "auto" выбирается
+ * векторное ядро, если JVM запущена с модулем jdk.incubator.vector, иначе скалярное.
+ * Если запрошенное векторное ядро недоступно, используется скалярное.
+ * Побитовое воспроизведение гарантирует только скалярное ядро, поэтому при записи
+ * журнала без явно заданного свойства используется оно, см. {@link #forRecording()}.
+ * Сторонние ядра подключаются через {@link ServiceLoader}: реализация
+ * {@link KinematicsKernel} с конструктором без аргументов регистрируется
+ * в META-INF/services/model.KinematicsKernel и выбирается по {@link KinematicsKernel#name()}
+ */
+public final class KinematicsKernels {
+    public static final String PROPERTY = "robots.kernel";
+    private static final String AUTO = "auto";
+    private static final String EXACT = "exact";
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final KinematicsKernel DEFAULT = select(System.getProperty(PROPERTY, AUTO));
+
+    private KinematicsKernels() {
+    }
+
+    /**
+     * Ядро, выбранное при запуске
+     */
+    public static KinematicsKernel getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Ядро для мира, входы которого пишутся в журнал: заданное свойством {@value #PROPERTY},
+     * а если свойство не задано - скалярное, а не выбранное в режиме "auto".
+     * Имя ядра записывается в заголовок журнала, и воспроизведение берёт то же ядро
+     */
+    public static KinematicsKernel forRecording() {
+        String name = System.getProperty(PROPERTY);
+        return name != null ? select(name) : new ScalarKinematicsKernel();
+    }
+
+    /**
+     * Возвращает ядро по имени
+     * @throws IllegalArgumentException если имя неизвестно
+     */
+    public static KinematicsKernel select(String name) {
+        return switch (name) {
+            case ScalarKinematicsKernel.NAME, EXACT -> new ScalarKinematicsKernel();
+            case FastKinematicsKernel.NAME -> new FastKinematicsKernel();
+            case VectorKinematicsKernel.NAME, AUTO -> {
+                KinematicsKernel vector = createVectorKernel();
+                yield vector != null ? vector : new ScalarKinematicsKernel();
+            }
+            default -> {
+                KinematicsKernel provided = loadProvided(name);
+                if (provided == null) {
+                    throw new IllegalArgumentException("Неизвестное ядро кинематики: " + name);
+                }
+                yield provided;
+            }
+        };
+    }
+
+    /**
+     * Ищет ядро с заданным именем среди зарегистрированных через ServiceLoader.
+     * Провайдеры, которые не удалось создать, пропускаются
+     */
+    private static KinematicsKernel loadProvided(String name) {
+        Iterator<KinematicsKernel> providers = ServiceLoader.load(KinematicsKernel.class).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    return null;
+                }
+                KinematicsKernel kernel = providers.next();
+                if (name.equals(kernel.name())) {
+                    return kernel;
+                }
+            } catch (ServiceConfigurationError e) {
+                // провайдер не загрузился, переходим к следующему
+            }
+        }
+    }
+
+    /**
+     * Доступно ли векторное ядро в этой JVM
+     */
+    public static boolean isVectorAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    /**
+     * Класс векторного ядра загружается по имени, чтобы без модуля
+     * jdk.incubator.vector не возникало ошибки связывания
+     */
+    private static KinematicsKernel createVectorKernel() {
+        if (!isVectorAvailable()) {
+            return null;
+        }
+        try {
+            return (KinematicsKernel) Class.forName("model.VectorKinematicsKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package model;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Прокладывает маршруты роботов в обход препятствий.
+ * Если до цели видна прямая, цель назначается сразу. Иначе путь ищется
+ * в пуле рабочих потоков через общий кеш путей, и готовый маршрут передаётся
+ * в мир, который применит его в начале ближайшего тика. Так серия новых целей
+ * не задерживает тик, а роботы с похожими целями получают путь из кеша
+ */
+public class Navigator {
+    private final RobotWorld world;
+    private final ObstacleMap map;
+    private final PathPlanner planner;
+    private final PathCache cache;
+    private final ExecutorService pool;
+
+    /**
+     * @param world мир роботов
+     * @param map карта препятствий
+     * @param cacheCapacity ёмкость кеша путей
+     * @param threads количество потоков планирования
+     */
+    public Navigator(RobotWorld world, ObstacleMap map, int cacheCapacity, int threads) {
+        this.world = world;
+        this.map = map;
+        this.planner = new PathPlanner(map);
+        this.cache = new PathCache(map, cacheCapacity);
+        this.pool = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("path-planner-", 0).daemon(true).factory());
+    }
+
+    /**
+     * Отправляет робота к точке. Вызывается в потоке, продвигающем мир
+     */
+    public void navigate(int robotId, double targetX, double targetY) {
+        double startX = world.getX(robotId);
+        double startY = world.getY(robotId);
+        if (map.isLineClear(startX, startY, targetX, targetY)) {
+            world.setTarget(robotId, targetX, targetY);
+            return;
+        }
+        int serial = world.requestRoute(robotId);
+        pool.execute(() -> world.submitRoute(robotId, serial, plan(startX, startY, targetX, targetY)));
+    }
+
+    /**
+     * Отправляет группу роботов к их точкам. Роботам, которым цель видна напрямую,
+     * цели назначаются одной пакетной операцией мира, остальным маршруты
+     * строятся в пуле. Вызывается в потоке, продвигающем мир
+     * @param targets точки парами (x, y) в порядке robotIds
+     */
+    public void navigateGroup(int[] robotIds, int count, double[] targets) {
+        int[] direct = new int[count];
+        double[] directTargets = new double[count * 2];
+        int directCount = 0;
+        for (int k = 0; k < count; k++) {
+            int robotId = robotIds[k];
+            double startX = world.getX(robotId);
+            double startY = world.getY(robotId);
+            double targetX = targets[k * 2];
+            double targetY = targets[k * 2 + 1];
+            if (map.isLineClear(startX, startY, targetX, targetY)) {
+                direct[directCount] = robotId;
+                directTargets[directCount * 2] = targetX;
+                directTargets[directCount * 2 + 1] = targetY;
+                directCount++;
+            } else {
+                int serial = world.requestRoute(robotId);
+                pool.execute(() -> world.submitRoute(robotId, serial, plan(startX, startY, targetX, targetY)));
+            }
+        }
+        if (directCount > 0) {
+            world.setTargets(direct, directCount, directTargets);
+        }
+    }
+
+    /**
+     * Строит маршрут: центры ячеек поворота пути, а в конце точная цель.
+     * За пределами карты препятствий нет, поэтому старт и цель вне карты
+     * прижимаются к ближайшим ячейкам на её краю, и путь ищется между ними.
+     * Если пути нет, возвращает пустой маршрут, и робот останавливается
+     */
+    double[] plan(double startX, double startY, double targetX, double targetY) {
+        int[] cells = cache.getOrPlan(planner,
+                clampCell(startX, map.getWidth()), clampCell(startY, map.getHeight()),
+                clampCell(targetX, map.getWidth()), clampCell(targetY, map.getHeight()));
+        if (cells == null) {
+            return new double[0];
+        }
+        int width = map.getWidth();
+        int turns = Math.max(0, cells.length - 1);
+        double[] points = new double[(turns + 1) * 2];
+        for (int i = 0; i < turns; i++) {
+            points[i * 2] = map.cellCenter(cells[i] % width);
+            points[i * 2 + 1] = map.cellCenter(cells[i] / width);
+        }
+        points[turns * 2] = targetX;
+        points[turns * 2 + 1] = targetY;
+        return points;
+    }
+
+    private int clampCell(double coordinate, int cells) {
+        return Math.max(0, Math.min(cells - 1, map.cellOf(coordinate)));
+    }
+
+    /**
+     * Останавливает потоки планирования
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public ObstacleMap getMap() {
+        return map;
+    }
+
+    public PathCache getCache() {
+        return cache;
+    }
+}
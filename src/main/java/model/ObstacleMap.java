@@ -0,0 +1,124 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Карта препятствий - прямоугольная сетка занятых и свободных ячеек.
+ * Ячейки хранятся битами в AtomicLongArray, поэтому карту можно менять
+ * в потоке симуляции и одновременно читать из потоков планировщика.
+ * Каждое изменение увеличивает версию карты, по ней сбрасывается кеш путей.
+ * Всё, что лежит за пределами карты, считается свободным
+ */
+public class ObstacleMap {
+    private final double cellSize;
+    private final int width;
+    private final int height;
+    private final AtomicLongArray bits;
+    private final AtomicInteger version = new AtomicInteger();
+
+    /**
+     * @param cellSize размер ячейки в координатах мира
+     * @param width ширина карты в ячейках
+     * @param height высота карты в ячейках
+     */
+    public ObstacleMap(double cellSize, int width, int height) {
+        if (!(cellSize > 0) || width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Некорректный размер карты: " + width + "x" + height + ", ячейка " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.width = width;
+        this.height = height;
+        this.bits = new AtomicLongArray((width * height + 63) >>> 6);
+    }
+
+    /**
+     * Занимает или освобождает ячейку
+     * @return true, если состояние ячейки изменилось
+     */
+    public boolean setBlocked(int cx, int cy, boolean blocked) {
+        if (!contains(cx, cy)) {
+            return false;
+        }
+        int index = cy * width + cx;
+        long mask = 1L << (index & 63);
+        int word = index >>> 6;
+        long before;
+        long after;
+        do {
+            before = bits.get(word);
+            after = blocked ? before | mask : before & ~mask;
+            if (before == after) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, before, after));
+        version.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Переключает состояние ячейки, в которую попадает точка мира
+     * @return true, если ячейка стала занятой
+     */
+    public boolean toggle(double x, double y) {
+        int cx = cellOf(x);
+        int cy = cellOf(y);
+        boolean blocked = !isBlocked(cx, cy);
+        setBlocked(cx, cy, blocked);
+        return blocked && contains(cx, cy);
+    }
+
+    public boolean isBlocked(int cx, int cy) {
+        if (!contains(cx, cy)) {
+            return false;
+        }
+        int index = cy * width + cx;
+        return (bits.get(index >>> 6) & (1L << (index & 63))) != 0;
+    }
+
+    /**
+     * Проверяет, что отрезок между двумя точками мира не проходит через занятые ячейки
+     */
+    public boolean isLineClear(double fromX, double fromY, double toX, double toY) {
+        double length = Math.hypot(toX - fromX, toY - fromY);
+        int steps = Math.max(1, (int) Math.ceil(length / (cellSize * 0.25)));
+        for (int i = 0; i <= steps; i++) {
+            double t = (double) i / steps;
+            if (isBlocked(cellOf(fromX + (toX - fromX) * t), cellOf(fromY + (toY - fromY) * t))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean contains(int cx, int cy) {
+        return cx >= 0 && cy >= 0 && cx < width && cy < height;
+    }
+
+    public int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    /**
+     * Координата центра ячейки по одной оси
+     */
+    public double cellCenter(int cell) {
+        return (cell + 0.5) * cellSize;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getVersion() {
+        return version.get();
+    }
+}
@@ -0,0 +1,83 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Параллельный движок тика. Делит роботов мира на непрерывные куски
+ * и обновляет их в ForkJoinPool на всех ядрах.
+ * Шаг одного робота зависит только от его собственного слота, поэтому
+ * результат побитово совпадает с последовательным обновлением.
+ */
+public class ParallelTickEngine {
+    /**
+     * Минимальный размер куска: меньшие куски не окупают накладные расходы на задачу
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public ParallelTickEngine() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param pool пул, в котором выполняются куски
+     * @param chunkSize количество роботов, обновляемых одной задачей
+     */
+    public ParallelTickEngine(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Размер куска должен быть положительным: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Обновляет активных роботов [0, count) мира. Если активных меньше
+     * двух кусков, работает в вызывающем потоке
+     * @return количество сдвинувшихся роботов
+     */
+    int step(RobotWorld world, int count) {
+        if (count <= chunkSize || world.getActiveCount() <= chunkSize || pool.getParallelism() <= 1) {
+            return world.stepActive(0, count);
+        }
+        return pool.invoke(new ChunkTask(world, 0, count));
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Задача, рекурсивно делящая диапазон пополам до размера куска
+     */
+    private final class ChunkTask extends RecursiveTask<Integer> {
+        private final RobotWorld world;
+        private final int from;
+        private final int to;
+
+        ChunkTask(RobotWorld world, int from, int to) {
+            this.world = world;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= chunkSize) {
+                return world.stepActive(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(world, from, middle);
+            left.fork();
+            int right = new ChunkTask(world, middle, to).compute();
+            return left.join() + right;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Общий кеш путей между парами ячеек карты с вытеснением давно не использованных (LRU).
+ * Пути хранятся как неизменяемые массивы индексов ячеек и разделяются
+ * между роботами. При изменении версии карты кеш целиком сбрасывается
+ */
+public class PathCache {
+    private final ObstacleMap map;
+    private final LinkedHashMap<Long, int[]> paths;
+    private int mapVersion;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param map карта, по версии которой кеш сбрасывается
+     * @param capacity максимальное количество хранимых путей
+     */
+    public PathCache(ObstacleMap map, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость кеша должна быть положительной: " + capacity);
+        }
+        this.map = map;
+        this.mapVersion = map.getVersion();
+        this.paths = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Возвращает путь из кеша или ищет его планировщиком и запоминает.
+     * Отсутствие пути тоже кешируется. Запросы с ячейками за пределами карты
+     * не кешируются: у них нет ключа, и планировщик сразу отвечает null
+     * @return путь в формате {@link PathPlanner#findPath} или null, если пути нет
+     */
+    public int[] getOrPlan(PathPlanner planner, int startX, int startY, int goalX, int goalY) {
+        if (!map.contains(startX, startY) || !map.contains(goalX, goalY)) {
+            return planner.findPath(startX, startY, goalX, goalY);
+        }
+        long key = key(startX, startY, goalX, goalY);
+        int version;
+        synchronized (this) {
+            invalidateIfChanged();
+            version = mapVersion;
+            if (paths.containsKey(key)) {
+                hits++;
+                return paths.get(key);
+            }
+            misses++;
+        }
+        int[] path = planner.findPath(startX, startY, goalX, goalY);
+        synchronized (this) {
+            invalidateIfChanged();
+            if (mapVersion == version) {
+                paths.put(key, path);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Сбрасывает кеш
+     */
+    public synchronized void clear() {
+        paths.clear();
+    }
+
+    private void invalidateIfChanged() {
+        int version = map.getVersion();
+        if (version != mapVersion) {
+            paths.clear();
+            mapVersion = version;
+        }
+    }
+
+    /**
+     * Ключ пары ячеек карты: индексы старта и цели неотрицательны и меньше width * height,
+     * поэтому помещаются в 32 бита каждый и не пересекаются
+     */
+    private long key(int startX, int startY, int goalX, int goalY) {
+        int width = map.getWidth();
+        long start = (long) startY * width + startX;
+        long goal = (long) goalY * width + goalX;
+        return (start << 32) | goal;
+    }
+
+    public synchronized int size() {
+        return paths.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
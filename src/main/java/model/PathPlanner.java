@@ -0,0 +1,207 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Поиск пути A* по карте препятствий с 8-связностью.
+ * По диагонали можно пройти, только если обе соседние по сторонам ячейки свободны.
+ * Рабочие массивы поиска принадлежат потоку и переиспользуются между поисками:
+ * вместо очистки используется номер поколения поиска
+ */
+public class PathPlanner {
+    private static final double DIAGONAL = Math.sqrt(2);
+    private static final int[] DX = {1, -1, 0, 0, 1, 1, -1, -1};
+    private static final int[] DY = {0, 0, 1, -1, 1, -1, 1, -1};
+
+    private final ObstacleMap map;
+    private final ThreadLocal<Workspace> workspaces;
+
+    public PathPlanner(ObstacleMap map) {
+        this.map = map;
+        int cells = map.getWidth() * map.getHeight();
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(cells));
+    }
+
+    /**
+     * Ищет путь между двумя ячейками карты
+     * @return индексы ячеек пути (cy * width + cx) без стартовой ячейки,
+     * только в точках поворота, заканчивая целевой; пустой массив, если старт
+     * совпадает с целью; null, если пути нет
+     */
+    public int[] findPath(int startX, int startY, int goalX, int goalY) {
+        if (!map.contains(startX, startY) || !map.contains(goalX, goalY) || map.isBlocked(goalX, goalY)) {
+            return null;
+        }
+        int width = map.getWidth();
+        int start = startY * width + startX;
+        int goal = goalY * width + goalX;
+        if (start == goal) {
+            return new int[0];
+        }
+
+        Workspace ws = workspaces.get();
+        int generation = ws.nextGeneration();
+        ws.open(start, 0, heuristic(startX, startY, goalX, goalY), generation);
+
+        while (ws.heapSize > 0) {
+            int current = ws.pop();
+            if (ws.closed[current] == generation) {
+                continue;
+            }
+            ws.closed[current] = generation;
+            if (current == goal) {
+                return reconstruct(ws, start, goal);
+            }
+            int cx = current % width;
+            int cy = current / width;
+            for (int d = 0; d < DX.length; d++) {
+                int nx = cx + DX[d];
+                int ny = cy + DY[d];
+                if (!map.contains(nx, ny) || map.isBlocked(nx, ny)) {
+                    continue;
+                }
+                boolean diagonal = d >= 4;
+                if (diagonal && (map.isBlocked(cx + DX[d], cy) || map.isBlocked(cx, cy + DY[d]))) {
+                    continue;
+                }
+                int neighbor = ny * width + nx;
+                if (ws.closed[neighbor] == generation) {
+                    continue;
+                }
+                double cost = ws.g[current] + (diagonal ? DIAGONAL : 1);
+                if (ws.seen[neighbor] != generation || cost < ws.g[neighbor]) {
+                    ws.parent[neighbor] = current;
+                    ws.open(neighbor, cost, cost + heuristic(nx, ny, goalX, goalY), generation);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Восстанавливает путь от цели к старту, оставляя только точки поворота
+     */
+    private int[] reconstruct(Workspace ws, int start, int goal) {
+        int width = map.getWidth();
+        int length = 0;
+        for (int cell = goal; cell != start; cell = ws.parent[cell]) {
+            length++;
+        }
+        int[] full = new int[length];
+        int cell = goal;
+        for (int i = length - 1; i >= 0; i--) {
+            full[i] = cell;
+            cell = ws.parent[cell];
+        }
+
+        int[] turns = new int[length];
+        int count = 0;
+        int previous = start;
+        for (int i = 0; i < length; i++) {
+            boolean last = i == length - 1;
+            if (!last) {
+                int dx1 = full[i] % width - previous % width;
+                int dy1 = full[i] / width - previous / width;
+                int dx2 = full[i + 1] % width - full[i] % width;
+                int dy2 = full[i + 1] / width - full[i] / width;
+                if (dx1 == dx2 && dy1 == dy2) {
+                    previous = full[i];
+                    continue;
+                }
+            }
+            turns[count++] = full[i];
+            previous = full[i];
+        }
+        return Arrays.copyOf(turns, count);
+    }
+
+    private static double heuristic(int x, int y, int goalX, int goalY) {
+        int dx = Math.abs(goalX - x);
+        int dy = Math.abs(goalY - y);
+        return Math.max(dx, dy) + (DIAGONAL - 1) * Math.min(dx, dy);
+    }
+
+    public ObstacleMap getMap() {
+        return map;
+    }
+
+    /**
+     * Рабочие массивы одного потока: стоимость пути, родитель,
+     * отметки поколения и двоичная куча открытых ячеек с ленивым удалением
+     */
+    private static final class Workspace {
+        final double[] g;
+        final int[] parent;
+        final int[] seen;
+        final int[] closed;
+        int[] heapCell;
+        double[] heapKey;
+        int heapSize;
+        int generation;
+
+        Workspace(int cells) {
+            g = new double[cells];
+            parent = new int[cells];
+            seen = new int[cells];
+            closed = new int[cells];
+            heapCell = new int[64];
+            heapKey = new double[64];
+        }
+
+        int nextGeneration() {
+            heapSize = 0;
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                Arrays.fill(closed, 0);
+                generation = 1;
+            }
+            return generation;
+        }
+
+        void open(int cell, double cost, double key, int generation) {
+            g[cell] = cost;
+            seen[cell] = generation;
+            if (heapSize == heapCell.length) {
+                heapCell = Arrays.copyOf(heapCell, heapSize * 2);
+                heapKey = Arrays.copyOf(heapKey, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int up = (i - 1) >>> 1;
+                if (heapKey[up] <= key) {
+                    break;
+                }
+                heapCell[i] = heapCell[up];
+                heapKey[i] = heapKey[up];
+                i = up;
+            }
+            heapCell[i] = cell;
+            heapKey[i] = key;
+        }
+
+        int pop() {
+            int top = heapCell[0];
+            int lastCell = heapCell[--heapSize];
+            double lastKey = heapKey[heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && heapKey[child + 1] < heapKey[child]) {
+                    child++;
+                }
+                if (heapKey[child] >= lastKey) {
+                    break;
+                }
+                heapCell[i] = heapCell[child];
+                heapKey[i] = heapKey[child];
+                i = child;
+            }
+            heapCell[i] = lastCell;
+            heapKey[i] = lastKey;
+            return top;
+        }
+    }
+}
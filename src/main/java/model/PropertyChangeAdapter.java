@@ -0,0 +1,81 @@
+package model;
+
+import java.beans.IndexedPropertyChangeEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Arrays;
+
+/**
+ * Адаптер, переводящий примитивные уведомления {@link RobotListener}
+ * в события PropertyChangeEvent для старых слушателей.
+ * Каждое событие создаёт объекты, поэтому адаптер нужен только для совместимости
+ */
+public class PropertyChangeAdapter implements RobotListener {
+    private final RobotWorld world;
+    private final int robotId;
+    private final PropertyChangeListener listener;
+
+    /**
+     * @param world мир-источник событий
+     * @param robotId робот, события которого пропускаются, или -1 для всех роботов
+     * @param listener старый слушатель
+     */
+    public PropertyChangeAdapter(RobotWorld world, int robotId, PropertyChangeListener listener) {
+        this.world = world;
+        this.robotId = robotId;
+        this.listener = listener;
+    }
+
+    @Override
+    public void onPositionChanged(int id, double x, double y, double direction) {
+        if (accepts(id)) {
+            listener.propertyChange(new IndexedPropertyChangeEvent(world, "position",
+                    new double[]{world.getPrevX(id), world.getPrevY(id)}, new double[]{x, y}, id));
+        }
+    }
+
+    /**
+     * Старое значение цели не хранится, поэтому в событии оно равно null
+     */
+    @Override
+    public void onTargetChanged(int id, double targetX, double targetY) {
+        if (accepts(id)) {
+            listener.propertyChange(new IndexedPropertyChangeEvent(world, "target",
+                    null, new double[]{targetX, targetY}, id));
+        }
+    }
+
+    /**
+     * Пакет изменений очередей путевых точек приходит одним событием "waypoints",
+     * новое значение которого - идентификаторы затронутых роботов
+     */
+    @Override
+    public void onWaypointsChanged(int[] robotIds, int count) {
+        int[] accepted = new int[count];
+        int size = 0;
+        for (int k = 0; k < count; k++) {
+            if (accepts(robotIds[k])) {
+                accepted[size++] = robotIds[k];
+            }
+        }
+        if (size > 0) {
+            listener.propertyChange(new PropertyChangeEvent(world, "waypoints",
+                    null, Arrays.copyOf(accepted, size)));
+        }
+    }
+
+    public PropertyChangeListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Робот, события которого пропускаются, или -1 для всех роботов
+     */
+    public int getRobotId() {
+        return robotId;
+    }
+
+    private boolean accepts(int id) {
+        return robotId < 0 || robotId == id;
+    }
+}
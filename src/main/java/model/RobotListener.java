@@ -0,0 +1,64 @@
+package model;
+
+/**
+ * Слушатель изменений мира роботов с примитивными параметрами.
+ * Вызовы не создают объектов событий, поэтому тик без изменений целей
+ * не выделяет память. Положение каждого робота сообщается не чаще
+ * одного раза за тик, после всех роботов вызывается onTickCompleted.
+ * Методы вызываются в потоке, который продвигает мир
+ */
+public interface RobotListener {
+
+    /**
+     * Робот сдвинулся или повернулся за прошедший тик
+     * @param robotId идентификатор робота
+     * @param x новая координата X
+     * @param y новая координата Y
+     * @param direction новое направление в радианах
+     */
+    void onPositionChanged(int robotId, double x, double y, double direction);
+
+    /**
+     * В мир добавлен новый робот
+     */
+    default void onRobotAdded(int robotId, double x, double y) {
+    }
+
+    /**
+     * Роботу назначена новая цель
+     */
+    default void onTargetChanged(int robotId, double targetX, double targetY) {
+    }
+
+    /**
+     * Группе роботов назначены новые цели одной операцией.
+     * По умолчанию сводится к onTargetChanged для каждого робота
+     * @param robotIds идентификаторы роботов; массив принадлежит вызывающему,
+     *                 его нельзя сохранять или менять
+     * @param count сколько первых элементов robotIds действительны
+     * @param targets цели парами (x, y) в том же порядке
+     */
+    default void onTargetsChanged(int[] robotIds, int count, double[] targets) {
+        for (int k = 0; k < count; k++) {
+            onTargetChanged(robotIds[k], targets[k * 2], targets[k * 2 + 1]);
+        }
+    }
+
+    /**
+     * Очереди путевых точек роботов изменились. При пакетном добавлении
+     * вызывается один раз на весь пакет
+     * @param robotIds идентификаторы роботов; массив принадлежит вызывающему,
+     *                 его нельзя сохранять или менять
+     * @param count сколько первых элементов robotIds действительны
+     */
+    default void onWaypointsChanged(int[] robotIds, int count) {
+    }
+
+    /**
+     * Тик завершён, о всех сдвинувшихся роботах уже сообщено
+     * @param tick номер завершённого тика
+     * @param movedCount количество сдвинувшихся роботов
+     */
+    default void onTickCompleted(long tick, int movedCount) {
+    }
+}
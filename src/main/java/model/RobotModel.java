@@ -1,93 +1,88 @@
 package model;
 
 import java.beans.PropertyChangeListener;
-import java.beans.PropertyChangeSupport;
 /**
- * Модель робота, которая хранит его текущее положение, направление и цель движения.
- * Также реализует механизм оповещения слушателей об изменениях положения и цели.
+ * Модель робота - лёгкое представление одного слота мира {@link RobotWorld}.
+ * Само состояние (положение, направление и цель) хранится в колонках мира,
+ * модель лишь перенаправляет вызовы и фильтрует события своего робота.
  */
 public class RobotModel {
-    private double x = 100;
-    private double y = 100;
-    private double direction = 0;
+    private final RobotWorld world;
+    private final int id;
 
-    private double targetX = 100;
-    private double targetY = 100;
+    /**
+     * Создаёт отдельный мир с одним роботом в точке (100, 100)
+     */
+    public RobotModel() {
+        this.world = new RobotWorld(1);
+        this.id = world.addRobot(100, 100);
+    }
 
-    private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+    RobotModel(RobotWorld world, int id) {
+        this.world = world;
+        this.id = id;
+    }
 
     /**
-     * Добавляет слушателя изменений свойств модели
+     * Добавляет слушателя изменений свойств модели.
+     * Слушатель получает только события этого робота
      * @param listener
      */
     public void addPropertyChangeListener(PropertyChangeListener listener) {
-        pcs.addPropertyChangeListener(listener);
+        world.addListener(new PropertyChangeAdapter(world, id, listener));
+    }
+
+    /**
+     * Отписывает слушателя, добавленного через {@link #addPropertyChangeListener},
+     * чтобы мир больше не держал ни его, ни его адаптер
+     */
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        world.removePropertyChangeListener(id, listener);
     }
 
     /**
      * Обновляет положение робота
      */
     public void updateRobotPosition() {
-        double distance = distanceToTarget();
-        if (distance < 0.5) {
-            return;
-        }
-
-        double oldX = x;
-        double oldY = y;
-
-        double angleToTarget = Math.atan2(targetY - y, targetX - x);
-        double angleDiff = normalizeAngle(angleToTarget - direction);
-
-        if (Math.abs(angleDiff) > 0.1) {
-            direction += Math.signum(angleDiff) * 0.05;
-        } else {
-            double speed = Math.min(2.0, distance);
-            x += speed * Math.cos(direction);
-            y += speed * Math.sin(direction);
-        }
+        world.updateRobot(id);
+    }
 
-        pcs.firePropertyChange("position", new double[]{oldX, oldY}, new double[]{x, y});
+    /**
+     * Перематывает робота на заданное число тиков без пошагового моделирования
+     */
+    public void advance(long ticks) {
+        world.advanceRobot(id, ticks);
     }
 
     public void setTarget(int x, int y) {
-        double oldTargetX = this.targetX;
-        double oldTargetY = this.targetY;
-        this.targetX = x;
-        this.targetY = y;
-
-        pcs.firePropertyChange("target", new double[]{oldTargetX, oldTargetY}, new double[]{targetX, targetY});
+        world.setTarget(id, x, y);
     }
 
-    private double distanceToTarget() {
-        double dx = targetX - x;
-        double dy = targetY - y;
-        return Math.sqrt(dx * dx + dy * dy);
+    public RobotWorld getWorld() {
+        return world;
     }
 
-    private double normalizeAngle(double angle) {
-        while (angle < -Math.PI) angle += 2 * Math.PI;
-        while (angle > Math.PI) angle -= 2 * Math.PI;
-        return angle;
+    public int getId() {
+        return id;
     }
 
     public double getX() {
-        return x;
+        return world.getX(id);
     }
 
     public double getY() {
-        return y;
+        return world.getY(id);
     }
 
     public double getDirection() {
-        return direction;
+        return world.getDirection(id);
     }
 
     public double getTargetX() {
-        return targetX;
+        return world.getTargetX(id);
     }
 
     public double getTargetY() {
-        return targetY;
+        return world.getTargetY(id);
     }
 }
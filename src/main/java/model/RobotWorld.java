@@ -0,0 +1,1110 @@
+package model;
+
+import java.beans.PropertyChangeListener;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Мир роботов. Хранит состояние всех роботов в плоских массивах примитивов
+ * (structure-of-arrays): координаты, направление и цель каждого робота лежат
+ * в отдельных колонках, а робот задаётся индексом (слотом) в этих колонках.
+ * За один тик все роботы обновляются одним проходом по массивам.
+ */
+public class RobotWorld {
+    /**
+     * Сохраняемые колонки состояния роботов
+     */
+    public enum Column {
+        X, Y, DIRECTION, TARGET_X, TARGET_Y, PREV_X, PREV_Y, PREV_DIRECTION
+    }
+
+    private static final int DEFAULT_CAPACITY = 16;
+    /**
+     * Наибольшее отклонение от цели, при котором робот едет, а не поворачивается
+     */
+    private static final double ALIGN_TOLERANCE = 0.1;
+    private static final double TAN_ALIGN_TOLERANCE = Math.tan(ALIGN_TOLERANCE);
+    /**
+     * Сколько шагов у границы прямого участка выполняется точно, а не аналитически
+     */
+    private static final int FAST_FORWARD_MARGIN = 2;
+
+    private double[] x;
+    private double[] y;
+    private double[] direction;
+    private double[] targetX;
+    private double[] targetY;
+    private double[] prevX;
+    private double[] prevY;
+    private double[] prevDirection;
+    private boolean[] moved;
+    private boolean[] retargeted;
+    private boolean[] arrived;
+    private int[] routeSerial;
+    /**
+     * Битовое множество активных роботов: бит сброшен, только если робот
+     * стоит у цели без путевых точек и тик ничего бы в нём не изменил
+     */
+    private long[] activeBits;
+    private int activeCount;
+    private final WaypointQueues waypoints;
+    private int robotsWithWaypoints;
+    private int count;
+    private long tick;
+    private ParallelTickEngine engine;
+    private KinematicsKernel kernel = KinematicsKernels.getDefault();
+
+    private static final RobotListener[] NO_LISTENERS = new RobotListener[0];
+    private volatile RobotListener[] listeners = NO_LISTENERS;
+    private final ConcurrentLinkedQueue<PendingRoute> pendingRoutes = new ConcurrentLinkedQueue<>();
+    private volatile SnapshotPublisher snapshots;
+    private boolean snapshotsDeferred;
+    private volatile Runnable wakeUpHandler;
+    private InputRecorder recorder;
+
+    public RobotWorld() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Создаёт пустой мир с заранее выделенными колонками
+     * @param capacity ожидаемое количество роботов
+     */
+    public RobotWorld(int capacity) {
+        int initial = Math.max(1, capacity);
+        x = new double[initial];
+        y = new double[initial];
+        direction = new double[initial];
+        targetX = new double[initial];
+        targetY = new double[initial];
+        prevX = new double[initial];
+        prevY = new double[initial];
+        prevDirection = new double[initial];
+        moved = new boolean[initial];
+        retargeted = new boolean[initial];
+        arrived = new boolean[initial];
+        routeSerial = new int[initial];
+        activeBits = new long[(initial + 63) >>> 6];
+        waypoints = new WaypointQueues(initial);
+    }
+
+    /**
+     * Добавляет робота в мир. Цель нового робота совпадает с его положением,
+     * поэтому он стоит на месте до первого вызова setTarget
+     * @return идентификатор (слот) робота
+     */
+    public int addRobot(double startX, double startY) {
+        ensureCapacity(count + 1);
+        int id = count++;
+        x[id] = startX;
+        y[id] = startY;
+        direction[id] = 0;
+        prevX[id] = startX;
+        prevY[id] = startY;
+        prevDirection[id] = 0;
+        targetX[id] = startX;
+        targetY[id] = startY;
+        if (recorder != null) {
+            recorder.robotAdded(tick, id, startX, startY);
+        }
+        for (RobotListener listener : listeners) {
+            listener.onRobotAdded(id, startX, startY);
+        }
+        return id;
+    }
+
+    /**
+     * Возвращает лёгкое представление одного робота мира
+     * @param id слот робота
+     */
+    public RobotModel robot(int id) {
+        checkId(id);
+        return new RobotModel(this, id);
+    }
+
+    /**
+     * Добавляет слушателя изменений мира
+     */
+    public synchronized void addListener(RobotListener listener) {
+        RobotListener[] current = listeners;
+        RobotListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Удаляет слушателя изменений мира
+     */
+    public synchronized void removeListener(RobotListener listener) {
+        RobotListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                RobotListener[] updated = new RobotListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Добавляет слушателя изменений в старом стиле. События приходят в виде
+     * IndexedPropertyChangeEvent, индекс которого равен идентификатору робота
+     */
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        addListener(new PropertyChangeAdapter(this, -1, listener));
+    }
+
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        removePropertyChangeListener(-1, listener);
+    }
+
+    /**
+     * Удаляет адаптер, через который слушатель подписан на события робота robotId
+     * (или всех роботов при -1)
+     */
+    synchronized void removePropertyChangeListener(int robotId, PropertyChangeListener listener) {
+        for (RobotListener l : listeners) {
+            if (l instanceof PropertyChangeAdapter adapter && adapter.getListener() == listener
+                    && adapter.getRobotId() == robotId) {
+                removeListener(l);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Устанавливает движок, которым обновляются роботы за тик.
+     * null означает последовательное обновление в вызывающем потоке
+     */
+    public void setTickEngine(ParallelTickEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Устанавливает ядро кинематики, которым обновляются роботы за тик
+     */
+    public void setKernel(KinematicsKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    public KinematicsKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Устанавливает получателя входных воздействий или null, чтобы перестать их записывать.
+     * Вызывается в потоке, продвигающем мир
+     */
+    public void setInputRecorder(InputRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public InputRecorder getInputRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Включает публикацию снимков мира в конце каждого тика и сразу публикует
+     * текущее состояние. Вызывается в потоке, продвигающем мир
+     */
+    public void enableSnapshots() {
+        if (snapshots == null) {
+            snapshots = new SnapshotPublisher();
+        }
+        publishSnapshot();
+    }
+
+    /**
+     * Публикует снимок текущего состояния, если публикация включена.
+     * Вызывается в потоке, продвигающем мир
+     */
+    public void publishSnapshot() {
+        SnapshotPublisher publisher = snapshots;
+        if (publisher == null) {
+            return;
+        }
+        WorldSnapshot snapshot = publisher.claim();
+        snapshot.capture(tick, count, x, y, direction, prevX, prevY, prevDirection, targetX, targetY);
+        publisher.publish(snapshot);
+    }
+
+    /**
+     * Пока включено, тики не публикуют снимки: при ускоренной симуляции
+     * отрисовывается только последний тик пачки. Вызывается в потоке, продвигающем мир
+     */
+    public void setSnapshotsDeferred(boolean deferred) {
+        snapshotsDeferred = deferred;
+    }
+
+    /**
+     * Захватывает последний опубликованный снимок. Безопасно из любого потока
+     * и не блокирует поток симуляции. Снимок нужно закрыть после чтения
+     * @return снимок или null, если публикация снимков не включена
+     */
+    public WorldSnapshot acquireSnapshot() {
+        SnapshotPublisher publisher = snapshots;
+        return publisher != null ? publisher.acquire() : null;
+    }
+
+    /**
+     * Продвигает всех активных роботов мира на один тик. Сначала обновляются
+     * колонки (параллельно, если задан движок), затем в вызывающем потоке роботы,
+     * дошедшие до цели, получают следующую путевую точку, и
+     * слушателям сообщается о каждом сдвинувшемся роботе ровно один раз.
+     * Роботы, которые за тик не сдвинулись, выбывают из активного множества
+     * до новой цели, поэтому стоимость тика растёт с числом активных роботов
+     * @return количество роботов, сдвинувшихся за тик
+     */
+    public int tick() {
+        applyPendingRoutes();
+        int movedCount = engine != null ? engine.step(this, count) : stepActive(0, count);
+        RobotListener[] current = listeners;
+        boolean withWaypoints = robotsWithWaypoints > 0;
+        int words = (count + 63) >>> 6;
+        for (int w = 0; w < words; w++) {
+            long bits = activeBits[w];
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (withWaypoints && arrived[i] && advanceArrived(i)) {
+                    movedCount++;
+                }
+                if (retargeted[i]) {
+                    fireTarget(current, i);
+                    retargeted[i] = false;
+                }
+                if (moved[i]) {
+                    firePosition(current, i);
+                } else {
+                    activeBits[w] &= ~(1L << i);
+                    activeCount--;
+                }
+            }
+        }
+        tick++;
+        if (!snapshotsDeferred) {
+            publishSnapshot();
+        }
+        for (RobotListener listener : current) {
+            listener.onTickCompleted(tick, movedCount);
+        }
+        return movedCount;
+    }
+
+    /**
+     * Обновляет активных роботов из диапазона [from, to), передавая ядру
+     * непрерывные отрезки активных слотов. Множество активных здесь только
+     * читается, поэтому непересекающиеся диапазоны можно обновлять из разных потоков
+     * @return количество сдвинувшихся роботов
+     */
+    int stepActive(int from, int to) {
+        int movedCount = 0;
+        int start = nextActive(from, to);
+        while (start < to) {
+            int end = nextInactive(start, to);
+            movedCount += stepRange(start, end);
+            start = nextActive(end, to);
+        }
+        return movedCount;
+    }
+
+    /**
+     * Первый активный робот в [from, to) или to, если таких нет
+     */
+    private int nextActive(int from, int to) {
+        if (from >= to) {
+            return to;
+        }
+        int w = from >>> 6;
+        long word = activeBits[w] & (-1L << from);
+        while (word == 0) {
+            if (++w << 6 >= to) {
+                return to;
+            }
+            word = activeBits[w];
+        }
+        return Math.min(to, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Первый неактивный робот в [from, to) или to, если таких нет
+     */
+    private int nextInactive(int from, int to) {
+        if (from >= to) {
+            return to;
+        }
+        int w = from >>> 6;
+        long word = ~activeBits[w] & (-1L << from);
+        while (word == 0) {
+            if (++w << 6 >= to) {
+                return to;
+            }
+            word = ~activeBits[w];
+        }
+        return Math.min(to, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Возвращает робота в активное множество
+     */
+    private void activate(int i) {
+        long bit = 1L << i;
+        if ((activeBits[i >>> 6] & bit) == 0) {
+            activeBits[i >>> 6] |= bit;
+            activeCount++;
+        }
+    }
+
+    private void activateAll() {
+        Arrays.fill(activeBits, 0, (count + 63) >>> 6, -1L);
+        if ((count & 63) != 0) {
+            activeBits[count >>> 6] = (1L << count) - 1;
+        }
+        activeCount = count;
+    }
+
+    /**
+     * Количество роботов, которые будут обновляться в следующем тике
+     */
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * Нечего моделировать: все роботы стоят у целей и нет ждущих маршрутов.
+     * Тик такого мира ничего не меняет
+     */
+    public boolean isIdle() {
+        return activeCount == 0 && pendingRoutes.isEmpty();
+    }
+
+    /**
+     * Задаёт действие, которым мир будит остановившийся цикл симуляции,
+     * когда из другого потока приходит маршрут
+     */
+    public void setWakeUpHandler(Runnable wakeUpHandler) {
+        this.wakeUpHandler = wakeUpHandler;
+    }
+
+    /**
+     * Обновляет роботов из диапазона [from, to). Пишет только в слоты
+     * этого диапазона, поэтому непересекающиеся диапазоны можно
+     * обновлять из разных потоков
+     * @return количество сдвинувшихся роботов
+     */
+    private int stepRange(int from, int to) {
+        int length = to - from;
+        System.arraycopy(x, from, prevX, from, length);
+        System.arraycopy(y, from, prevY, from, length);
+        System.arraycopy(direction, from, prevDirection, from, length);
+        int movedCount = kernel.step(x, y, direction, targetX, targetY, moved, from, to);
+        Arrays.fill(retargeted, from, to, false);
+        markArrived(from, to);
+        return movedCount;
+    }
+
+    /**
+     * Запоминает предыдущее состояние одного робота и делает один шаг
+     */
+    private boolean stepSlot(int i) {
+        return stepRange(i, i + 1) > 0;
+    }
+
+    /**
+     * Отмечает флагом arrived роботов, дошедших до цели с непустой очередью
+     * путевых точек. Очереди здесь только читаются, а следующую точку
+     * выдаёт последовательный проход advanceArrived
+     */
+    private void markArrived(int from, int to) {
+        if (robotsWithWaypoints == 0) {
+            Arrays.fill(arrived, from, to, false);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            arrived[i] = !moved[i] && !waypoints.isEmpty(i);
+        }
+    }
+
+    /**
+     * Выдаёт дошедшему до цели роботу следующую путевую точку
+     * и делает шаг к ней в этом же тике
+     * @return true, если робот сдвинулся
+     */
+    private boolean advanceArrived(int i) {
+        arrived[i] = false;
+        if (!nextWaypoint(i)) {
+            return false;
+        }
+        retargeted[i] = true;
+        return kernel.step(x, y, direction, targetX, targetY, moved, i, i + 1) > 0;
+    }
+
+    /**
+     * Переводит цель робота на следующую путевую точку, пропуская точки,
+     * до которых меньше 0.5
+     * @return true, если цель изменилась
+     */
+    private boolean nextWaypoint(int i) {
+        while (!waypoints.isEmpty(i)) {
+            double nextX = waypoints.peekX(i);
+            double nextY = waypoints.peekY(i);
+            pollWaypoint(i);
+            double dx = nextX - x[i];
+            double dy = nextY - y[i];
+            if (Math.sqrt(dx * dx + dy * dy) >= 0.5) {
+                targetX[i] = nextX;
+                targetY[i] = nextY;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void pollWaypoint(int i) {
+        waypoints.poll(i);
+        if (waypoints.isEmpty(i)) {
+            robotsWithWaypoints--;
+        }
+    }
+
+    private void clearWaypointQueue(int i) {
+        if (!waypoints.isEmpty(i)) {
+            waypoints.clear(i);
+            robotsWithWaypoints--;
+        }
+    }
+
+    private void appendWaypoint(int i, double pointX, double pointY) {
+        if (waypoints.isEmpty(i)) {
+            robotsWithWaypoints++;
+        }
+        activate(i);
+        waypoints.append(i, pointX, pointY);
+    }
+
+    /**
+     * Перематывает весь мир на заданное число тиков без пошагового моделирования.
+     * Результат совпадает с вызовом tick() ticks раз: решения о повороте,
+     * движении, остановке и переходе к путевым точкам принимаются в те же тики,
+     * а координаты совпадают с точностью до накопленной ошибки округления
+     * (порядка ticks * ulp координаты). Поэтому {@link #stateHash()} после перемотки
+     * нельзя сравнивать с хешем мира, прошедшего те же тики через tick():
+     * биты координат расходятся уже через несколько тиков. Журнал и сохранение мира
+     * это не нарушает: перемотка записывается в журнал и воспроизводится
+     * той же перемоткой, а сохранение хранит колонки как есть. Перемотка всегда использует эталонную
+     * скалярную кинематику, независимо от выбранного ядра. Слушатели получают по одному уведомлению
+     * о каждом изменившемся роботе и одно onTickCompleted
+     * @return количество роботов, изменивших положение
+     */
+    public int advance(long ticks) {
+        if (ticks < 0) {
+            throw new IllegalArgumentException("Число тиков не может быть отрицательным: " + ticks);
+        }
+        if (ticks == 0) {
+            return 0;
+        }
+        applyPendingRoutes();
+        if (recorder != null) {
+            recorder.advanced(tick, -1, ticks);
+        }
+        int movedCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (advanceSlot(i, ticks)) {
+                movedCount++;
+            }
+        }
+        RobotListener[] current = listeners;
+        if (current.length > 0) {
+            for (int i = 0; i < count; i++) {
+                if (retargeted[i]) {
+                    fireTarget(current, i);
+                }
+                if (moved[i]) {
+                    firePosition(current, i);
+                }
+            }
+        }
+        tick += ticks;
+        activateAll();
+        publishSnapshot();
+        for (RobotListener listener : current) {
+            listener.onTickCompleted(tick, movedCount);
+        }
+        return movedCount;
+    }
+
+    /**
+     * Перематывает одного робота на заданное число тиков, см. {@link #advance(long)}
+     * @return true, если робот изменил положение или направление
+     */
+    public boolean advanceRobot(int id, long ticks) {
+        checkId(id);
+        if (ticks < 0) {
+            throw new IllegalArgumentException("Число тиков не может быть отрицательным: " + ticks);
+        }
+        if (recorder != null) {
+            recorder.advanced(tick, id, ticks);
+        }
+        activate(id);
+        if (!advanceSlot(id, ticks)) {
+            return false;
+        }
+        RobotListener[] current = listeners;
+        if (retargeted[id]) {
+            fireTarget(current, id);
+        }
+        firePosition(current, id);
+        return true;
+    }
+
+    /**
+     * Перемотка одного робота. Каждая итерация либо расходует тики, либо берёт
+     * следующую путевую точку:
+     * - поворот на месте идёт точным циклом (не больше pi / 0.05 итераций, без
+     *   тригонометрии, так как угол до цели при повороте не меняется);
+     * - прямой участок с полной скоростью проходится одним прыжком: шаги
+     *   постоянны, пока проекция на направление не меньше max(2, |perp| / tan 0.1);
+     *   несколько шагов у границы участка выполняются точно
+     */
+    private boolean advanceSlot(int i, long ticks) {
+        double startX = x[i];
+        double startY = y[i];
+        double startDirection = direction[i];
+        boolean anyRetarget = false;
+        long remaining = ticks;
+        while (remaining > 0) {
+            double dx = targetX[i] - x[i];
+            double dy = targetY[i] - y[i];
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if (distance < 0.5) {
+                if (waypoints.isEmpty(i) || !nextWaypoint(i)) {
+                    break;
+                }
+                anyRetarget = true;
+                continue;
+            }
+
+            double angleToTarget = Math.atan2(dy, dx);
+            double angleDiff = normalizeAngle(angleToTarget - direction[i]);
+            if (Math.abs(angleDiff) > ALIGN_TOLERANCE) {
+                do {
+                    direction[i] += Math.signum(angleDiff) * 0.05;
+                    remaining--;
+                    angleDiff = normalizeAngle(angleToTarget - direction[i]);
+                } while (remaining > 0 && Math.abs(angleDiff) > ALIGN_TOLERANCE);
+                continue;
+            }
+
+            long jump = straightSteps(dx, dy, direction[i]) - FAST_FORWARD_MARGIN;
+            if (jump >= FAST_FORWARD_MARGIN) {
+                jump = Math.min(jump, remaining);
+                x[i] += jump * (2.0 * Math.cos(direction[i]));
+                y[i] += jump * (2.0 * Math.sin(direction[i]));
+                remaining -= jump;
+            } else {
+                step(i);
+                remaining--;
+            }
+        }
+        prevX[i] = x[i];
+        prevY[i] = y[i];
+        prevDirection[i] = direction[i];
+        arrived[i] = false;
+        retargeted[i] = anyRetarget;
+        moved[i] = x[i] != startX || y[i] != startY || direction[i] != startDirection;
+        return moved[i];
+    }
+
+    /**
+     * Считает, сколько шагов подряд робот, выровненный по направлению, проедет
+     * с полной скоростью 2 без поворотов. В точке после j шагов проекция вектора
+     * до цели на направление равна along - 2j, а перпендикуляр perp не меняется;
+     * шаг возможен, пока отклонение не больше 0.1 и расстояние не меньше 2
+     */
+    private static long straightSteps(double dx, double dy, double heading) {
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        double along = dx * cos + dy * sin;
+        double perp = Math.abs(dx * sin - dy * cos);
+        double threshold = Math.max(2.0, perp / TAN_ALIGN_TOLERANCE);
+        if (along < threshold) {
+            return 0;
+        }
+        return (long) ((along - threshold) / 2.0) + 1;
+    }
+
+    /**
+     * Продвигает на один шаг только одного робота
+     * @return true, если робот сдвинулся
+     */
+    public boolean updateRobot(int id) {
+        checkId(id);
+        if (recorder != null) {
+            recorder.robotStepped(tick, id);
+        }
+        activate(id);
+        boolean stepped = stepSlot(id);
+        if (arrived[id]) {
+            stepped = advanceArrived(id);
+        }
+        if (!stepped) {
+            return false;
+        }
+        RobotListener[] current = listeners;
+        if (retargeted[id]) {
+            fireTarget(current, id);
+        }
+        firePosition(current, id);
+        return true;
+    }
+
+    /**
+     * Копирует колонку всех роботов в буфер, начиная с его текущей позиции
+     */
+    public void exportColumn(Column column, DoubleBuffer out) {
+        out.put(column(column), 0, count);
+    }
+
+    /**
+     * Суммарное количество путевых точек во всех очередях
+     */
+    public long getTotalWaypointCount() {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += waypoints.size(i);
+        }
+        return total;
+    }
+
+    /**
+     * Копирует очереди путевых точек: длины очередей всех роботов
+     * и затем все точки подряд парами (x, y)
+     * @param scratch рабочий массив, который можно переиспользовать; может быть null
+     * @return рабочий массив, возможно увеличенный
+     */
+    public double[] exportWaypoints(IntBuffer counts, DoubleBuffer points, double[] scratch) {
+        double[] buffer = scratch != null ? scratch : new double[0];
+        for (int i = 0; i < count; i++) {
+            int size = waypoints.size(i);
+            counts.put(size);
+            if (size == 0) {
+                continue;
+            }
+            if (buffer.length < size * 2) {
+                buffer = new double[Math.max(size * 2, buffer.length * 2)];
+            }
+            waypoints.copy(i, buffer);
+            points.put(buffer, 0, size * 2);
+        }
+        return buffer;
+    }
+
+    /**
+     * Заменяет состояние мира сохранённым. Роботов в мире не должно быть больше,
+     * чем в сохранении. Ждущие маршруты отбрасываются, все роботы становятся активными.
+     * Слушатели узнают о новых роботах, о положении и цели каждого робота
+     * и получают onTickCompleted. Восстановление не записывается в журнал входов.
+     * Аргументы проверяются до изменения мира, поэтому при ошибке мир остаётся прежним.
+     * Вызывается в потоке, продвигающем мир
+     * @param columns буферы колонок в порядке {@link Column}, по robots значений в каждом
+     * @param waypointCounts длины очередей путевых точек роботов
+     * @param waypointPoints точки очередей подряд парами (x, y)
+     */
+    public void restore(int robots, long restoredTick, DoubleBuffer[] columns,
+                        int[] waypointCounts, DoubleBuffer waypointPoints) {
+        if (robots < count) {
+            throw new IllegalArgumentException("В сохранении " + robots + " роботов, а в мире уже " + count);
+        }
+        for (Column column : Column.values()) {
+            if (columns[column.ordinal()].remaining() < robots) {
+                throw new IllegalArgumentException("В колонке " + column + " меньше " + robots + " значений");
+            }
+        }
+        if (waypointCounts.length < robots) {
+            throw new IllegalArgumentException("Длин очередей " + waypointCounts.length + ", а роботов " + robots);
+        }
+        long totalPoints = 0;
+        int blocks = 0;
+        for (int i = 0; i < robots; i++) {
+            int size = waypointCounts[i];
+            if (size < 0) {
+                throw new IllegalArgumentException("Отрицательная длина очереди робота " + i + ": " + size);
+            }
+            totalPoints += size;
+            blocks += (size + WaypointQueues.BLOCK_SIZE - 1) / WaypointQueues.BLOCK_SIZE;
+        }
+        if (waypointPoints.remaining() < totalPoints * 2) {
+            throw new IllegalArgumentException("Путевых точек " + waypointPoints.remaining() / 2
+                    + ", а по длинам очередей " + totalPoints);
+        }
+        int previousCount = count;
+        ensureCapacity(robots);
+        for (int i = 0; i < count; i++) {
+            clearWaypointQueue(i);
+            routeSerial[i]++;
+        }
+        pendingRoutes.clear();
+        count = robots;
+        tick = restoredTick;
+        for (Column column : Column.values()) {
+            columns[column.ordinal()].get(column(column), 0, robots);
+        }
+        Arrays.fill(moved, 0, robots, false);
+        Arrays.fill(retargeted, 0, robots, false);
+        Arrays.fill(arrived, 0, robots, false);
+        waypoints.reserve(robots, blocks);
+        double[] buffer = new double[0];
+        for (int i = 0; i < robots; i++) {
+            int size = waypointCounts[i];
+            if (size == 0) {
+                continue;
+            }
+            if (buffer.length < size * 2) {
+                buffer = new double[Math.max(size * 2, buffer.length * 2)];
+            }
+            waypointPoints.get(buffer, 0, size * 2);
+            waypoints.append(i, buffer, 0, size);
+            robotsWithWaypoints++;
+        }
+        activateAll();
+
+        RobotListener[] current = listeners;
+        for (int i = previousCount; i < robots; i++) {
+            for (RobotListener listener : current) {
+                listener.onRobotAdded(i, x[i], y[i]);
+            }
+        }
+        if (current.length > 0) {
+            for (int i = 0; i < robots; i++) {
+                fireTarget(current, i);
+                firePosition(current, i);
+            }
+        }
+        publishSnapshot();
+        for (RobotListener listener : current) {
+            listener.onTickCompleted(tick, robots);
+        }
+    }
+
+    private double[] column(Column column) {
+        return switch (column) {
+            case X -> x;
+            case Y -> y;
+            case DIRECTION -> direction;
+            case TARGET_X -> targetX;
+            case TARGET_Y -> targetY;
+            case PREV_X -> prevX;
+            case PREV_Y -> prevY;
+            case PREV_DIRECTION -> prevDirection;
+        };
+    }
+
+    /**
+     * Устанавливает новую цель для робота. Очередь путевых точек робота
+     * очищается, а ещё не применённые маршруты для него устаревают
+     */
+    public void setTarget(int id, double newTargetX, double newTargetY) {
+        checkId(id);
+        if (recorder != null) {
+            recorder.targetSet(tick, id, newTargetX, newTargetY);
+        }
+        clearWaypointQueue(id);
+        routeSerial[id]++;
+        targetX[id] = newTargetX;
+        targetY[id] = newTargetY;
+        activate(id);
+        fireTarget(listeners, id);
+    }
+
+    /**
+     * Назначает цели группе роботов одной операцией: очереди путевых точек
+     * роботов очищаются, вход записывается одной записью, а слушатели получают
+     * одно уведомление onTargetsChanged на всю группу
+     * @param robotIds идентификаторы роботов без повторов
+     * @param count сколько первых элементов robotIds действительны
+     * @param targets цели парами (x, y) в том же порядке
+     */
+    public void setTargets(int[] robotIds, int count, double[] targets) {
+        for (int k = 0; k < count; k++) {
+            checkId(robotIds[k]);
+        }
+        if (recorder != null) {
+            recorder.targetsSet(tick, robotIds, count, targets);
+        }
+        for (int k = 0; k < count; k++) {
+            int id = robotIds[k];
+            clearWaypointQueue(id);
+            routeSerial[id]++;
+            targetX[id] = targets[k * 2];
+            targetY[id] = targets[k * 2 + 1];
+            activate(id);
+        }
+        for (RobotListener listener : listeners) {
+            listener.onTargetsChanged(robotIds, count, targets);
+        }
+    }
+
+    /**
+     * Добавляет путевую точку в конец очереди робота. Когда робот дойдёт
+     * до текущей цели, цель автоматически перейдёт к следующей точке
+     */
+    public void addWaypoint(int id, double pointX, double pointY) {
+        checkId(id);
+        if (recorder != null) {
+            recorder.waypointsAppended(tick, id, new double[] {pointX, pointY}, 0, 1);
+        }
+        appendWaypoint(id, pointX, pointY);
+        RobotListener[] current = listeners;
+        if (current.length > 0) {
+            int[] single = {id};
+            for (RobotListener listener : current) {
+                listener.onWaypointsChanged(single, 1);
+            }
+        }
+    }
+
+    /**
+     * Добавляет путевые точки сразу многим роботам одним вызовом.
+     * Слушатели получают одно пакетное уведомление на весь вызов.
+     * Аргументы проверяются до изменения очередей
+     * @param robotIds идентификаторы роботов
+     * @param counts counts[k] - количество точек для робота robotIds[k]
+     * @param robotCount сколько первых элементов robotIds и counts использовать
+     * @param points точки всех роботов подряд парами (x, y)
+     */
+    public void appendWaypoints(int[] robotIds, int[] counts, int robotCount, double[] points) {
+        long total = 0;
+        for (int k = 0; k < robotCount; k++) {
+            checkId(robotIds[k]);
+            if (counts[k] < 0) {
+                throw new IllegalArgumentException("Отрицательное количество точек для робота " + robotIds[k]);
+            }
+            total += counts[k];
+        }
+        if (total * 2 > points.length) {
+            throw new IllegalArgumentException("Ожидалось " + total * 2 + " координат, передано " + points.length);
+        }
+        int offset = 0;
+        for (int k = 0; k < robotCount; k++) {
+            int id = robotIds[k];
+            if (recorder != null) {
+                recorder.waypointsAppended(tick, id, points, offset, counts[k]);
+            }
+            for (int j = 0; j < counts[k]; j++) {
+                appendWaypoint(id, points[(offset + j) * 2], points[(offset + j) * 2 + 1]);
+            }
+            offset += counts[k];
+        }
+        for (RobotListener listener : listeners) {
+            listener.onWaypointsChanged(robotIds, robotCount);
+        }
+    }
+
+    /**
+     * Очищает очередь путевых точек робота, не меняя текущую цель
+     */
+    public void clearWaypoints(int id) {
+        checkId(id);
+        if (recorder != null) {
+            recorder.waypointsCleared(tick, id);
+        }
+        clearWaypointQueue(id);
+    }
+
+    public int getWaypointCount(int id) {
+        return waypoints.size(id);
+    }
+
+    /**
+     * Копирует оставшиеся путевые точки робота парами (x, y)
+     * @return количество скопированных точек
+     */
+    public int copyWaypoints(int id, double[] out) {
+        return waypoints.copy(id, out);
+    }
+
+    /**
+     * Начинает запрос маршрута для робота. Все ранее запрошенные маршруты
+     * этого робота устаревают и при поступлении будут отброшены
+     * @return номер запроса, который нужно передать в submitRoute
+     */
+    public int requestRoute(int id) {
+        checkId(id);
+        return ++routeSerial[id];
+    }
+
+    /**
+     * Передаёт готовый маршрут робота. Метод можно вызывать из любого потока:
+     * маршрут применяется в начале ближайшего тика, если с момента запроса
+     * роботу не назначали новую цель
+     * @param serial номер запроса из requestRoute
+     * @param points точки маршрута парами (x, y); они заменяют очередь путевых
+     *               точек робота, пустой массив останавливает робота
+     */
+    public void submitRoute(int id, int serial, double[] points) {
+        pendingRoutes.add(new PendingRoute(id, serial, points));
+        Runnable handler = wakeUpHandler;
+        if (handler != null) {
+            handler.run();
+        }
+    }
+
+    private void applyPendingRoutes() {
+        PendingRoute pending;
+        while ((pending = pendingRoutes.poll()) != null) {
+            if (routeSerial[pending.id()] == pending.serial()) {
+                applyRoute(pending.id(), pending.points());
+            }
+        }
+    }
+
+    /**
+     * Сразу заменяет очередь путевых точек робота маршрутом и направляет робота
+     * к первой точке. Вызывается в потоке, продвигающем мир, например при
+     * воспроизведении журнала
+     * @param points точки маршрута парами (x, y); пустой массив останавливает робота
+     */
+    public void applyRoute(int id, double[] points) {
+        checkId(id);
+        if (recorder != null) {
+            recorder.routeApplied(tick, id, points);
+        }
+        clearWaypointQueue(id);
+        for (int i = 0; i + 1 < points.length; i += 2) {
+            appendWaypoint(id, points[i], points[i + 1]);
+        }
+        targetX[id] = x[id];
+        targetY[id] = y[id];
+        nextWaypoint(id);
+        activate(id);
+        fireTarget(listeners, id);
+    }
+
+    /**
+     * Точный шаг одного робота эталонной кинематикой
+     */
+    private boolean step(int i) {
+        return ScalarKinematicsKernel.stepRobot(x, y, direction, targetX, targetY, i);
+    }
+
+    private void fireTarget(RobotListener[] current, int id) {
+        for (RobotListener listener : current) {
+            listener.onTargetChanged(id, targetX[id], targetY[id]);
+        }
+    }
+
+    private void firePosition(RobotListener[] current, int id) {
+        for (RobotListener listener : current) {
+            listener.onPositionChanged(id, x[id], y[id], direction[id]);
+        }
+    }
+
+    private static double normalizeAngle(double angle) {
+        return ScalarKinematicsKernel.normalizeAngle(angle);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= x.length) {
+            return;
+        }
+        int newCapacity = Math.max(required, x.length * 2);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        direction = Arrays.copyOf(direction, newCapacity);
+        targetX = Arrays.copyOf(targetX, newCapacity);
+        targetY = Arrays.copyOf(targetY, newCapacity);
+        prevX = Arrays.copyOf(prevX, newCapacity);
+        prevY = Arrays.copyOf(prevY, newCapacity);
+        prevDirection = Arrays.copyOf(prevDirection, newCapacity);
+        moved = Arrays.copyOf(moved, newCapacity);
+        retargeted = Arrays.copyOf(retargeted, newCapacity);
+        arrived = Arrays.copyOf(arrived, newCapacity);
+        routeSerial = Arrays.copyOf(routeSerial, newCapacity);
+        activeBits = Arrays.copyOf(activeBits, (newCapacity + 63) >>> 6);
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= count) {
+            throw new IndexOutOfBoundsException("Робот " + id + " не найден");
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public double getX(int id) {
+        return x[id];
+    }
+
+    public double getY(int id) {
+        return y[id];
+    }
+
+    public double getDirection(int id) {
+        return direction[id];
+    }
+
+    /**
+     * Координата X робота до последнего тика, нужна для интерполяции при отрисовке
+     */
+    public double getPrevX(int id) {
+        return prevX[id];
+    }
+
+    public double getPrevY(int id) {
+        return prevY[id];
+    }
+
+    public double getPrevDirection(int id) {
+        return prevDirection[id];
+    }
+
+    public double getTargetX(int id) {
+        return targetX[id];
+    }
+
+    public double getTargetY(int id) {
+        return targetY[id];
+    }
+
+    /**
+     * Считает хеш полного состояния роботов по битовому представлению колонок.
+     * Одинаковые начальное состояние и последовательность входов дают
+     * одинаковый хеш независимо от числа потоков движка.
+     * Перемотка {@link #advance(long)} считается отдельным входом: мир после неё
+     * совпадает по хешу только с миром, перемотанным так же, а не прошедшим
+     * те же тики по одному
+     */
+    public long stateHash() {
+        long hash = 1125899906842597L;
+        for (int i = 0; i < count; i++) {
+            hash = 31 * hash + Double.doubleToLongBits(x[i]);
+            hash = 31 * hash + Double.doubleToLongBits(y[i]);
+            hash = 31 * hash + Double.doubleToLongBits(direction[i]);
+            hash = 31 * hash + Double.doubleToLongBits(targetX[i]);
+            hash = 31 * hash + Double.doubleToLongBits(targetY[i]);
+        }
+        return hash;
+    }
+
+    public double distanceToTarget(int id) {
+        double dx = targetX[id] - x[id];
+        double dy = targetY[id] - y[id];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Маршрут, рассчитанный в другом потоке и ожидающий применения
+     */
+    private record PendingRoute(int id, int serial, double[] points) {
+    }
+}
@@ -0,0 +1,61 @@
+package model;
+
+/**
+ * Скалярное ядро кинематики: обрабатывает роботов по одному.
+ * Это эталонное поведение, с которым сверяются остальные ядра,
+ * и запасной вариант, если векторное ядро недоступно
+ */
+public class ScalarKinematicsKernel implements KinematicsKernel {
+    public static final String NAME = "scalar";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int step(double[] x, double[] y, double[] direction, double[] targetX, double[] targetY,
+                    boolean[] moved, int from, int to) {
+        int movedCount = 0;
+        for (int i = from; i < to; i++) {
+            boolean stepped = stepRobot(x, y, direction, targetX, targetY, i);
+            moved[i] = stepped;
+            if (stepped) {
+                movedCount++;
+            }
+        }
+        return movedCount;
+    }
+
+    /**
+     * Один шаг кинематики робота: сначала поворот к цели,
+     * затем движение со скоростью не больше 2 единиц за тик
+     * @return true, если робот повернулся или сдвинулся
+     */
+    static boolean stepRobot(double[] x, double[] y, double[] direction, double[] targetX, double[] targetY, int i) {
+        double dx = targetX[i] - x[i];
+        double dy = targetY[i] - y[i];
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        if (distance < 0.5) {
+            return false;
+        }
+
+        double angleToTarget = Math.atan2(dy, dx);
+        double angleDiff = normalizeAngle(angleToTarget - direction[i]);
+
+        if (Math.abs(angleDiff) > 0.1) {
+            direction[i] += Math.signum(angleDiff) * 0.05;
+        } else {
+            double speed = Math.min(2.0, distance);
+            x[i] += speed * Math.cos(direction[i]);
+            y[i] += speed * Math.sin(direction[i]);
+        }
+        return true;
+    }
+
+    static double normalizeAngle(double angle) {
+        while (angle < -Math.PI) angle += 2 * Math.PI;
+        while (angle > Math.PI) angle -= 2 * Math.PI;
+        return angle;
+    }
+}
@@ -0,0 +1,61 @@
+package model;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Публикует снимки мира без блокировок.
+ * Поток симуляции заполняет свободный снимок из пула и делает его текущим
+ * одной записью в volatile-поле; прежний текущий снимок освобождается,
+ * когда его отпустит последний читатель. Читатель захватывает снимок
+ * CAS-увеличением счётчика ссылок и проверяет, что снимок всё ещё текущий.
+ * Пул растёт, только если читатели одновременно держат много снимков
+ */
+final class SnapshotPublisher {
+    private final CopyOnWriteArrayList<WorldSnapshot> pool = new CopyOnWriteArrayList<>();
+    private volatile WorldSnapshot current;
+
+    /**
+     * Занимает свободный снимок для записи. Вызывается только потоком симуляции
+     */
+    WorldSnapshot claim() {
+        for (WorldSnapshot snapshot : pool) {
+            if (snapshot.refs.compareAndSet(WorldSnapshot.FREE, WorldSnapshot.WRITING)) {
+                return snapshot;
+            }
+        }
+        WorldSnapshot snapshot = new WorldSnapshot();
+        snapshot.refs.set(WorldSnapshot.WRITING);
+        pool.add(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Делает заполненный снимок текущим и отпускает прежний
+     */
+    void publish(WorldSnapshot snapshot) {
+        snapshot.refs.set(1);
+        WorldSnapshot previous = current;
+        current = snapshot;
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    /**
+     * Захватывает текущий снимок; null, если ещё ничего не опубликовано
+     */
+    WorldSnapshot acquire() {
+        while (true) {
+            WorldSnapshot snapshot = current;
+            if (snapshot == null) {
+                return null;
+            }
+            if (snapshot.tryRetain()) {
+                if (snapshot == current) {
+                    return snapshot;
+                }
+                snapshot.release();
+            }
+        }
+    }
+}
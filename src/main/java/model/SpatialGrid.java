@@ -0,0 +1,404 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Пространственный индекс роботов на равномерной сетке.
+ * Ячейки сетки хешируются в таблицу корзин фиксированного размера, поэтому мир
+ * не обязан быть ограниченным. Роботы одной корзины связаны в двусвязный список
+ * на массивах int, так что перенос робота в другую ячейку стоит O(1).
+ * Индекс подписывается на мир: сдвиги роботов копятся за тик и применяются
+ * одной записью под блокировкой в onTickCompleted, поэтому сдвиг одного робота
+ * вне тика попадает в индекс с ближайшим тиком.
+ * Запросы можно выполнять из любого потока одновременно с обновлением
+ */
+public class SpatialGrid implements RobotListener {
+    private static final int NONE = -1;
+    /**
+     * Расстояния до найденных соседей для kNearest без своего буфера, по одному массиву на поток
+     */
+    private static final ThreadLocal<double[]> NEAREST_DISTANCES = ThreadLocal.withInitial(() -> new double[16]);
+
+    private final double cellSize;
+    private final int bucketMask;
+    private final int[] head;
+    private final StampedLock lock = new StampedLock();
+
+    private int[] next = new int[0];
+    private int[] prev = new int[0];
+    private int[] bucketOf = new int[0];
+    private int[] cellX = new int[0];
+    private int[] cellY = new int[0];
+    private double[] posX = new double[0];
+    private double[] posY = new double[0];
+    private int size;
+    /**
+     * Границы занятых ячеек. Они только расширяются, поэтому это оценка сверху
+     */
+    private int minCellX = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE;
+    private int minCellY = Integer.MAX_VALUE;
+    private int maxCellY = Integer.MIN_VALUE;
+
+    /**
+     * Сдвиги роботов за текущий тик, их пишет только поток, продвигающий мир
+     */
+    private int[] pendingIds = new int[0];
+    private double[] pendingX = new double[0];
+    private double[] pendingY = new double[0];
+    private int pendingCount;
+
+    /**
+     * Создаёт индекс, заполняет его роботами мира и подписывает на изменения
+     * @param world мир роботов
+     * @param cellSize размер ячейки сетки
+     */
+    public SpatialGrid(RobotWorld world, double cellSize) {
+        this(cellSize, Math.max(1024, world.size()));
+        for (int i = 0; i < world.size(); i++) {
+            update(i, world.getX(i), world.getY(i));
+        }
+        world.addListener(this);
+    }
+
+    /**
+     * Создаёт пустой индекс
+     * @param cellSize размер ячейки сетки
+     * @param expectedRobots ожидаемое количество роботов, от него зависит число корзин
+     */
+    public SpatialGrid(double cellSize, int expectedRobots) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Размер ячейки должен быть положительным: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        int buckets = Integer.highestOneBit(Math.max(16, expectedRobots) - 1) << 1;
+        this.bucketMask = buckets - 1;
+        this.head = new int[buckets];
+        Arrays.fill(head, NONE);
+    }
+
+    @Override
+    public void onRobotAdded(int robotId, double x, double y) {
+        update(robotId, x, y);
+    }
+
+    @Override
+    public void onPositionChanged(int robotId, double x, double y, double direction) {
+        if (pendingCount == pendingIds.length) {
+            int capacity = Math.max(1024, pendingCount * 2);
+            pendingIds = Arrays.copyOf(pendingIds, capacity);
+            pendingX = Arrays.copyOf(pendingX, capacity);
+            pendingY = Arrays.copyOf(pendingY, capacity);
+        }
+        pendingIds[pendingCount] = robotId;
+        pendingX[pendingCount] = x;
+        pendingY[pendingCount] = y;
+        pendingCount++;
+    }
+
+    @Override
+    public void onTickCompleted(long tick, int movedCount) {
+        flush();
+    }
+
+    /**
+     * Применяет накопленные сдвиги роботов одной записью под блокировкой.
+     * Вызывается в потоке, продвигающем мир
+     */
+    public void flush() {
+        if (pendingCount == 0) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < pendingCount; i++) {
+                place(pendingIds[i], pendingX[i], pendingY[i]);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Обновляет положение робота в индексе, добавляя его при первом обращении
+     */
+    public void update(int id, double x, double y) {
+        long stamp = lock.writeLock();
+        try {
+            place(id, x, y);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Переносит робота в ячейку его положения. Вызывается под блокировкой записи
+     */
+    private void place(int id, double x, double y) {
+        int cx = cellOf(x);
+        int cy = cellOf(y);
+        if (id >= bucketOf.length) {
+            grow(id + 1);
+        }
+        posX[id] = x;
+        posY[id] = y;
+        int bucket = bucket(cx, cy);
+        int current = bucketOf[id];
+        if (current == bucket && cellX[id] == cx && cellY[id] == cy) {
+            return;
+        }
+        if (current == NONE) {
+            size++;
+        } else {
+            unlink(id, current);
+        }
+        cellX[id] = cx;
+        cellY[id] = cy;
+        link(id, bucket);
+        minCellX = Math.min(minCellX, cx);
+        maxCellX = Math.max(maxCellX, cx);
+        minCellY = Math.min(minCellY, cy);
+        maxCellY = Math.max(maxCellY, cy);
+    }
+
+    /**
+     * Ищет ближайшего к точке робота в пределах радиуса
+     * @return идентификатор робота или -1, если в радиусе никого нет
+     */
+    public int queryPoint(double x, double y, double radius) {
+        int minCx = cellOf(x - radius);
+        int maxCx = cellOf(x + radius);
+        int minCy = cellOf(y - radius);
+        int maxCy = cellOf(y + radius);
+        double best = radius * radius;
+        int found = NONE;
+        long stamp = lock.readLock();
+        try {
+            for (int cy = minCy; cy <= maxCy; cy++) {
+                for (int cx = minCx; cx <= maxCx; cx++) {
+                    for (int id = head[bucket(cx, cy)]; id != NONE; id = next[id]) {
+                        if (cellX[id] != cx || cellY[id] != cy) {
+                            continue;
+                        }
+                        double dx = posX[id] - x;
+                        double dy = posY[id] - y;
+                        double distance = dx * dx + dy * dy;
+                        if (distance <= best) {
+                            best = distance;
+                            found = id;
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return found;
+    }
+
+    /**
+     * Находит роботов внутри прямоугольника (границы включаются)
+     * @param out массив для результата; если роботов больше его длины, лишние не записываются
+     * @return количество найденных роботов (может превышать out.length)
+     */
+    public int queryRect(double minX, double minY, double maxX, double maxY, int[] out) {
+        int minCx = cellOf(Math.min(minX, maxX));
+        int maxCx = cellOf(Math.max(minX, maxX));
+        int minCy = cellOf(Math.min(minY, maxY));
+        int maxCy = cellOf(Math.max(minY, maxY));
+        double left = Math.min(minX, maxX);
+        double right = Math.max(minX, maxX);
+        double top = Math.min(minY, maxY);
+        double bottom = Math.max(minY, maxY);
+        int found = 0;
+        long stamp = lock.readLock();
+        try {
+            long cells = ((long) maxCx - minCx + 1) * ((long) maxCy - minCy + 1);
+            if (cells > head.length) {
+                for (int id = 0; id < bucketOf.length; id++) {
+                    if (bucketOf[id] != NONE && inside(id, left, top, right, bottom)) {
+                        if (found < out.length) {
+                            out[found] = id;
+                        }
+                        found++;
+                    }
+                }
+                return found;
+            }
+            for (int cy = minCy; cy <= maxCy; cy++) {
+                for (int cx = minCx; cx <= maxCx; cx++) {
+                    for (int id = head[bucket(cx, cy)]; id != NONE; id = next[id]) {
+                        if (cellX[id] == cx && cellY[id] == cy && inside(id, left, top, right, bottom)) {
+                            if (found < out.length) {
+                                out[found] = id;
+                            }
+                            found++;
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return found;
+    }
+
+    /**
+     * Находит k ближайших к точке роботов, расширяя поиск кольцами ячеек.
+     * Кольца не выходят за границы занятых ячеек, а когда просмотренных ячеек
+     * становится больше, чем роботов в индексе, поиск переходит на перебор всех роботов
+     * @param out массив для результата, упорядоченного по возрастанию расстояния;
+     *            k равно его длине
+     * @return количество найденных роботов (не больше out.length)
+     */
+    public int kNearest(double x, double y, int[] out) {
+        double[] distances = NEAREST_DISTANCES.get();
+        if (distances.length < out.length) {
+            distances = new double[Math.max(out.length, distances.length * 2)];
+            NEAREST_DISTANCES.set(distances);
+        }
+        return kNearest(x, y, out, distances);
+    }
+
+    /**
+     * То же, что {@link #kNearest(double, double, int[])}, с буфером вызывающего
+     * @param distances буфер для квадратов расстояний длиной не меньше out.length
+     * @return количество найденных роботов (не больше out.length)
+     */
+    public int kNearest(double x, double y, int[] out, double[] distances) {
+        int k = out.length;
+        if (k == 0) {
+            return 0;
+        }
+        if (distances.length < k) {
+            throw new IllegalArgumentException("Буфер расстояний короче out: " + distances.length + " < " + k);
+        }
+        int found = 0;
+        int centerX = cellOf(x);
+        int centerY = cellOf(y);
+        long stamp = lock.readLock();
+        try {
+            long rings = Math.max(Math.max((long) centerX - minCellX, (long) maxCellX - centerX),
+                    Math.max((long) centerY - minCellY, (long) maxCellY - centerY));
+            long probed = 0;
+            int visited = 0;
+            for (int ring = 0; ring <= rings && visited < size; ring++) {
+                if (found == k) {
+                    double reach = ring == 0 ? 0 : (ring - 1) * cellSize;
+                    if (reach * reach > distances[k - 1]) {
+                        break;
+                    }
+                }
+                probed += ring == 0 ? 1 : 8L * ring;
+                if (probed > bucketOf.length) {
+                    found = 0;
+                    for (int id = 0; id < bucketOf.length; id++) {
+                        if (bucketOf[id] != NONE) {
+                            double dx = posX[id] - x;
+                            double dy = posY[id] - y;
+                            found = insertNearest(out, distances, found, id, dx * dx + dy * dy);
+                        }
+                    }
+                    return found;
+                }
+                for (int cy = centerY - ring; cy <= centerY + ring; cy++) {
+                    boolean edgeRow = cy == centerY - ring || cy == centerY + ring;
+                    int step = edgeRow ? 1 : 2 * ring;
+                    for (int cx = centerX - ring; cx <= centerX + ring; cx += Math.max(1, step)) {
+                        for (int id = head[bucket(cx, cy)]; id != NONE; id = next[id]) {
+                            if (cellX[id] != cx || cellY[id] != cy) {
+                                continue;
+                            }
+                            visited++;
+                            double dx = posX[id] - x;
+                            double dy = posY[id] - y;
+                            found = insertNearest(out, distances, found, id, dx * dx + dy * dy);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return found;
+    }
+
+    /**
+     * Вставляет робота в упорядоченный список ближайших, вытесняя самого дальнего
+     */
+    private static int insertNearest(int[] ids, double[] distances, int found, int id, double distance) {
+        int k = ids.length;
+        if (found == k && distance >= distances[k - 1]) {
+            return found;
+        }
+        int position = found < k ? found++ : k - 1;
+        while (position > 0 && distances[position - 1] > distance) {
+            ids[position] = ids[position - 1];
+            distances[position] = distances[position - 1];
+            position--;
+        }
+        ids[position] = id;
+        distances[position] = distance;
+        return found;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    private boolean inside(int id, double left, double top, double right, double bottom) {
+        return posX[id] >= left && posX[id] <= right && posY[id] >= top && posY[id] <= bottom;
+    }
+
+    private int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private int bucket(int cx, int cy) {
+        int hash = cx * 0x9E3779B1 + cy * 0x85EBCA6B;
+        return (hash ^ (hash >>> 15)) & bucketMask;
+    }
+
+    private void link(int id, int bucket) {
+        int first = head[bucket];
+        next[id] = first;
+        prev[id] = NONE;
+        if (first != NONE) {
+            prev[first] = id;
+        }
+        head[bucket] = id;
+        bucketOf[id] = bucket;
+    }
+
+    private void unlink(int id, int bucket) {
+        int before = prev[id];
+        int after = next[id];
+        if (before != NONE) {
+            next[before] = after;
+        } else {
+            head[bucket] = after;
+        }
+        if (after != NONE) {
+            prev[after] = before;
+        }
+    }
+
+    private void grow(int required) {
+        int capacity = Math.max(required, bucketOf.length * 2);
+        int oldLength = bucketOf.length;
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        bucketOf = Arrays.copyOf(bucketOf, capacity);
+        Arrays.fill(bucketOf, oldLength, capacity, NONE);
+        cellX = Arrays.copyOf(cellX, capacity);
+        cellY = Arrays.copyOf(cellY, capacity);
+        posX = Arrays.copyOf(posX, capacity);
+        posY = Arrays.copyOf(posY, capacity);
+    }
+}
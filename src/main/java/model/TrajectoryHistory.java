@@ -0,0 +1,313 @@
+package model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * История положений роботов в кольцевых буферах на примитивных массивах.
+ * У каждого робота своё кольцо фиксированной ёмкости в общих массивах,
+ * поэтому запись точки не создаёт объектов. Точки прореживаются: новая
+ * точка пишется, если с прошлой прошло не меньше everyTicks тиков и робот
+ * сместился не меньше чем на minDistance (1 и 0 отключают соответствующее условие).
+ * Если тик мира ушёл назад (загрузка сохранения), интервал отсчитывается заново.
+ * Для каждого робота хранится описанный прямоугольник его точек: новая точка
+ * расширяет его, а после каждого полного круга кольца он пересчитывается заново,
+ * поэтому он покрывает не больше двух кругов точек и обходится в O(1) на точку.
+ * Общее число точек всех роботов ограничено бюджетом: когда роботов становится
+ * так много, что capacity точек на каждого в него не помещаются, кольца укорачиваются
+ * (сохраняя самые новые точки), а при бюджете меньше двух точек на робота
+ * следы не пишутся вовсе. Так история мира из миллионов роботов не занимает гигабайты.
+ * История подписывается на мир и пишется в его потоке, а читать её можно
+ * из любого потока: кольцо каждого робота защищено счётчиком-seqlock,
+ * и читатель повторяет копирование, если во время чтения была запись
+ */
+public class TrajectoryHistory implements RobotListener {
+    private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(int[].class);
+    /**
+     * Бюджет точек по умолчанию: 4M точек, 64 МБ на координаты
+     */
+    public static final int DEFAULT_MAX_POINTS = 1 << 22;
+    /**
+     * Меньше двух точек на робота след не рисуется
+     */
+    private static final int MIN_RING = 2;
+
+    private final RobotWorld world;
+    private final int capacity;
+    private final int maxPoints;
+    private final int everyTicks;
+    private final double minDistanceSquared;
+    private volatile Rings rings;
+
+    /**
+     * Создаёт историю с бюджетом {@link #DEFAULT_MAX_POINTS} точек и подписывает её на мир
+     * @param capacity сколько последних точек хранится на робота
+     * @param everyTicks минимальный интервал между точками в тиках
+     * @param minDistance минимальное смещение между точками
+     */
+    public TrajectoryHistory(RobotWorld world, int capacity, int everyTicks, double minDistance) {
+        this(world, capacity, everyTicks, minDistance, DEFAULT_MAX_POINTS);
+    }
+
+    /**
+     * Создаёт историю и подписывает её на мир
+     * @param capacity сколько последних точек хранится на робота, пока позволяет бюджет
+     * @param everyTicks минимальный интервал между точками в тиках
+     * @param minDistance минимальное смещение между точками
+     * @param maxPoints сколько точек всего хранится на всех роботов
+     */
+    public TrajectoryHistory(RobotWorld world, int capacity, int everyTicks, double minDistance, int maxPoints) {
+        if (capacity <= 0 || everyTicks <= 0 || minDistance < 0 || maxPoints <= 0) {
+            throw new IllegalArgumentException("Неверные параметры истории: capacity=" + capacity
+                    + ", everyTicks=" + everyTicks + ", minDistance=" + minDistance + ", maxPoints=" + maxPoints);
+        }
+        this.world = world;
+        this.capacity = capacity;
+        this.maxPoints = maxPoints;
+        this.everyTicks = everyTicks;
+        this.minDistanceSquared = minDistance * minDistance;
+        int robots = Math.max(1, world.size());
+        this.rings = new Rings(ringCapacity(robots), robots);
+        for (int i = 0; i < world.size(); i++) {
+            append(rings, i, world.getX(i), world.getY(i));
+        }
+        world.addListener(this);
+    }
+
+    @Override
+    public void onRobotAdded(int robotId, double x, double y) {
+        Rings current = rings;
+        if (robotId >= current.size.length) {
+            int robots = Math.max(robotId + 1, current.size.length * 2);
+            current = current.grow(ringCapacity(robots), robots);
+            rings = current;
+        }
+        append(current, robotId, x, y);
+    }
+
+    @Override
+    public void onPositionChanged(int robotId, double x, double y, double direction) {
+        Rings current = rings;
+        long elapsed = world.getTick() - current.lastTick[robotId];
+        if (elapsed >= 0 && elapsed < everyTicks) {
+            return;
+        }
+        double dx = x - current.lastX[robotId];
+        double dy = y - current.lastY[robotId];
+        if (dx * dx + dy * dy < minDistanceSquared) {
+            return;
+        }
+        append(current, robotId, x, y);
+    }
+
+    /**
+     * Длина кольца на робота, при которой robots колец помещаются в бюджет
+     */
+    private int ringCapacity(int robots) {
+        int ring = Math.min(capacity, maxPoints / robots);
+        return ring >= MIN_RING ? ring : 0;
+    }
+
+    private void append(Rings current, int robotId, double x, double y) {
+        current.lastTick[robotId] = world.getTick();
+        current.lastX[robotId] = x;
+        current.lastY[robotId] = y;
+        int capacity = current.capacity;
+        if (capacity == 0) {
+            return;
+        }
+        int sequence = current.sequence[robotId];
+        SEQUENCE.setOpaque(current.sequence, robotId, sequence + 1);
+        VarHandle.storeStoreFence();
+        int slot = robotId * capacity + current.head[robotId];
+        current.x[slot] = x;
+        current.y[slot] = y;
+        int head = (current.head[robotId] + 1) % capacity;
+        current.head[robotId] = head;
+        current.size[robotId] = Math.min(capacity, current.size[robotId] + 1);
+        if (current.size[robotId] == 1 || head == 0) {
+            current.computeBounds(robotId);
+        } else {
+            current.minX[robotId] = Math.min(current.minX[robotId], x);
+            current.minY[robotId] = Math.min(current.minY[robotId], y);
+            current.maxX[robotId] = Math.max(current.maxX[robotId], x);
+            current.maxY[robotId] = Math.max(current.maxY[robotId], y);
+        }
+        SEQUENCE.setRelease(current.sequence, robotId, sequence + 2);
+    }
+
+    /**
+     * Копирует историю робота парами (x, y) от старых точек к новым.
+     * Если массив мал, копируются самые новые точки
+     * @param out массив вызывающего
+     * @return количество скопированных точек
+     */
+    public int read(int robotId, double[] out) {
+        while (true) {
+            Rings current = rings;
+            if (robotId < 0 || robotId >= current.size.length) {
+                return 0;
+            }
+            int before = (int) SEQUENCE.getAcquire(current.sequence, robotId);
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int capacity = current.capacity;
+            int size = current.size[robotId];
+            int head = current.head[robotId];
+            int total = Math.min(size, out.length / 2);
+            int base = robotId * capacity;
+            for (int i = 0; i < total; i++) {
+                int slot = base + Math.floorMod(head - total + i, capacity);
+                out[i * 2] = current.x[slot];
+                out[i * 2 + 1] = current.y[slot];
+            }
+            VarHandle.loadLoadFence();
+            if ((int) SEQUENCE.getOpaque(current.sequence, robotId) == before) {
+                return total;
+            }
+        }
+    }
+
+    /**
+     * Копирует описанный прямоугольник точек робота (он может быть шире следа,
+     * но никогда не уже) в out как minX, minY, maxX, maxY
+     * @return false, если у робота нет точек
+     */
+    public boolean readBounds(int robotId, double[] out) {
+        while (true) {
+            Rings current = rings;
+            if (robotId < 0 || robotId >= current.size.length) {
+                return false;
+            }
+            int before = (int) SEQUENCE.getAcquire(current.sequence, robotId);
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            boolean present = current.size[robotId] > 0;
+            out[0] = current.minX[robotId];
+            out[1] = current.minY[robotId];
+            out[2] = current.maxX[robotId];
+            out[3] = current.maxY[robotId];
+            VarHandle.loadLoadFence();
+            if ((int) SEQUENCE.getOpaque(current.sequence, robotId) == before) {
+                return present;
+            }
+        }
+    }
+
+    /**
+     * Наибольшее число точек на робота; при многих роботах кольца короче
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Массивы колец всех роботов. При добавлении роботов сверх ёмкости
+     * создаётся новый набор, а читатели старого видят его последнее состояние.
+     * Размер массивов точек считается с проверкой переполнения
+     */
+    private static final class Rings {
+        final double[] x;
+        final double[] y;
+        final int[] head;
+        final int[] size;
+        final int[] sequence;
+        final long[] lastTick;
+        final double[] lastX;
+        final double[] lastY;
+        final double[] minX;
+        final double[] minY;
+        final double[] maxX;
+        final double[] maxY;
+        private final int capacity;
+
+        Rings(int capacity, int robots) {
+            this.capacity = capacity;
+            x = new double[Math.multiplyExact(capacity, robots)];
+            y = new double[Math.multiplyExact(capacity, robots)];
+            head = new int[robots];
+            size = new int[robots];
+            sequence = new int[robots];
+            lastTick = new long[robots];
+            lastX = new double[robots];
+            lastY = new double[robots];
+            minX = new double[robots];
+            minY = new double[robots];
+            maxX = new double[robots];
+            maxY = new double[robots];
+        }
+
+        /**
+         * Пересчитывает прямоугольник робота по точкам кольца
+         */
+        void computeBounds(int robot) {
+            double left = Double.POSITIVE_INFINITY;
+            double top = Double.POSITIVE_INFINITY;
+            double right = Double.NEGATIVE_INFINITY;
+            double bottom = Double.NEGATIVE_INFINITY;
+            int base = robot * capacity;
+            for (int i = 0; i < size[robot]; i++) {
+                int slot = base + Math.floorMod(head[robot] - 1 - i, capacity);
+                left = Math.min(left, x[slot]);
+                top = Math.min(top, y[slot]);
+                right = Math.max(right, x[slot]);
+                bottom = Math.max(bottom, y[slot]);
+            }
+            minX[robot] = left;
+            minY[robot] = top;
+            maxX[robot] = right;
+            maxY[robot] = bottom;
+        }
+
+        /**
+         * Набор для большего числа роботов. Если кольца укорачиваются,
+         * в каждом остаются самые новые точки
+         */
+        Rings grow(int capacity, int robots) {
+            if (capacity == this.capacity) {
+                return new Rings(this, robots);
+            }
+            Rings grown = new Rings(capacity, robots);
+            int old = size.length;
+            System.arraycopy(lastTick, 0, grown.lastTick, 0, old);
+            System.arraycopy(lastX, 0, grown.lastX, 0, old);
+            System.arraycopy(lastY, 0, grown.lastY, 0, old);
+            if (capacity == 0) {
+                return grown;
+            }
+            for (int robot = 0; robot < old; robot++) {
+                int kept = Math.min(size[robot], capacity);
+                for (int i = 0; i < kept; i++) {
+                    int from = robot * this.capacity + Math.floorMod(head[robot] - kept + i, this.capacity);
+                    grown.x[robot * capacity + i] = x[from];
+                    grown.y[robot * capacity + i] = y[from];
+                }
+                grown.size[robot] = kept;
+                grown.head[robot] = kept % capacity;
+                grown.computeBounds(robot);
+            }
+            return grown;
+        }
+
+        private Rings(Rings from, int robots) {
+            capacity = from.capacity;
+            x = Arrays.copyOf(from.x, Math.multiplyExact(capacity, robots));
+            y = Arrays.copyOf(from.y, Math.multiplyExact(capacity, robots));
+            head = Arrays.copyOf(from.head, robots);
+            size = Arrays.copyOf(from.size, robots);
+            sequence = Arrays.copyOf(from.sequence, robots);
+            lastTick = Arrays.copyOf(from.lastTick, robots);
+            lastX = Arrays.copyOf(from.lastX, robots);
+            lastY = Arrays.copyOf(from.lastY, robots);
+            minX = Arrays.copyOf(from.minX, robots);
+            minY = Arrays.copyOf(from.minY, robots);
+            maxX = Arrays.copyOf(from.maxX, robots);
+            maxY = Arrays.copyOf(from.maxY, robots);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Векторное ядро кинематики на jdk.incubator.vector: обрабатывает сразу
+ * столько роботов, сколько double помещается в вектор процессора.
+ * Выбор между поворотом и движением сделан без ветвлений через маски:
+ * для каждой дорожки считаются оба варианта, а маска выбирает, какой записать.
+ * Нормализация угла выполняется одним вычитанием кратного 2pi, поэтому
+ * результат отличается от скалярного ядра на ошибку округления
+ * (сверка - {@code --parity} в HeadlessRunner).
+ * Требует запуска JVM с {@code --add-modules jdk.incubator.vector}
+ */
+public class VectorKinematicsKernel implements KinematicsKernel {
+    public static final String NAME = "vector";
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final double TWO_PI = 2 * Math.PI;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    /**
+     * Количество роботов, обрабатываемых за одну векторную операцию
+     */
+    public static int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public int step(double[] x, double[] y, double[] direction, double[] targetX, double[] targetY,
+                    boolean[] moved, int from, int to) {
+        int movedCount = 0;
+        int i = from;
+        int upper = from + SPECIES.loopBound(to - from);
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector px = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector py = DoubleVector.fromArray(SPECIES, y, i);
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, targetX, i).sub(px);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, targetY, i).sub(py);
+            DoubleVector distance = dx.mul(dx).add(dy.mul(dy)).sqrt();
+
+            VectorMask<Double> active = distance.compare(VectorOperators.GE, 0.5);
+            active.intoArray(moved, i);
+            if (!active.anyTrue()) {
+                continue;
+            }
+            movedCount += active.trueCount();
+
+            DoubleVector heading = DoubleVector.fromArray(SPECIES, direction, i);
+            DoubleVector angleDiff = dy.lanewise(VectorOperators.ATAN2, dx).sub(heading);
+            angleDiff = angleDiff.sub(floor(angleDiff.add(Math.PI).div(TWO_PI)).mul(TWO_PI));
+
+            VectorMask<Double> rotate = angleDiff.abs().compare(VectorOperators.GT, 0.1).and(active);
+            VectorMask<Double> advance = active.andNot(rotate);
+
+            DoubleVector turn = DoubleVector.broadcast(SPECIES, -0.05)
+                    .blend(0.05, angleDiff.compare(VectorOperators.GT, 0.0));
+            heading.add(turn, rotate).intoArray(direction, i);
+
+            DoubleVector speed = distance.min(2.0);
+            px.add(speed.mul(heading.lanewise(VectorOperators.COS)), advance).intoArray(x, i);
+            py.add(speed.mul(heading.lanewise(VectorOperators.SIN)), advance).intoArray(y, i);
+        }
+        for (; i < to; i++) {
+            boolean stepped = ScalarKinematicsKernel.stepRobot(x, y, direction, targetX, targetY, i);
+            moved[i] = stepped;
+            if (stepped) {
+                movedCount++;
+            }
+        }
+        return movedCount;
+    }
+
+    /**
+     * Округление вниз без ветвлений: отбрасывание дробной части через long
+     * и поправка на единицу для отрицательных нецелых значений
+     */
+    private static DoubleVector floor(DoubleVector value) {
+        DoubleVector truncated = (DoubleVector) value
+                .convert(VectorOperators.D2L, 0)
+                .convert(VectorOperators.L2D, 0);
+        return truncated.sub(1.0, truncated.compare(VectorOperators.GT, value));
+    }
+}
@@ -0,0 +1,208 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Очереди путевых точек всех роботов в общем пуле примитивных массивов.
+ * Пул разбит на блоки по {@link #BLOCK_SIZE} точек; очередь робота - это
+ * односвязная цепочка блоков, освободившиеся блоки возвращаются в общий
+ * список свободных. Поэтому добавление и извлечение точки стоят O(1)
+ * и не создают объектов, кроме редкого расширения пула.
+ * Класс не потокобезопасен: им пользуется только поток, продвигающий мир
+ */
+public class WaypointQueues {
+    public static final int BLOCK_SIZE = 16;
+    private static final int NONE = -1;
+
+    private double[] pointX;
+    private double[] pointY;
+    private int[] nextBlock;
+    private int freeBlock = NONE;
+    private int blockCount;
+
+    private int[] headBlock;
+    private int[] headPos;
+    private int[] tailBlock;
+    private int[] tailPos;
+    private int[] size;
+
+    public WaypointQueues(int robots) {
+        int capacity = Math.max(1, robots);
+        headBlock = new int[capacity];
+        headPos = new int[capacity];
+        tailBlock = new int[capacity];
+        tailPos = new int[capacity];
+        size = new int[capacity];
+        Arrays.fill(headBlock, NONE);
+        Arrays.fill(tailBlock, NONE);
+        pointX = new double[BLOCK_SIZE * 4];
+        pointY = new double[BLOCK_SIZE * 4];
+        nextBlock = new int[4];
+    }
+
+    /**
+     * Добавляет точку в конец очереди робота
+     */
+    public void append(int robot, double x, double y) {
+        ensureRobots(robot + 1);
+        int block = tailBlock[robot];
+        if (block == NONE || tailPos[robot] == BLOCK_SIZE) {
+            int fresh = allocateBlock();
+            if (block == NONE) {
+                headBlock[robot] = fresh;
+                headPos[robot] = 0;
+            } else {
+                nextBlock[block] = fresh;
+            }
+            tailBlock[robot] = fresh;
+            tailPos[robot] = 0;
+            block = fresh;
+        }
+        int slot = block * BLOCK_SIZE + tailPos[robot]++;
+        pointX[slot] = x;
+        pointY[slot] = y;
+        size[robot]++;
+    }
+
+    /**
+     * Добавляет точки из массива пар (x, y)
+     * @param offset индекс первой пары
+     * @param count количество пар
+     */
+    public void append(int robot, double[] points, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            append(robot, points[(offset + i) * 2], points[(offset + i) * 2 + 1]);
+        }
+    }
+
+    public int size(int robot) {
+        return robot < size.length ? size[robot] : 0;
+    }
+
+    public boolean isEmpty(int robot) {
+        return size(robot) == 0;
+    }
+
+    /**
+     * Координата X первой точки очереди; очередь не должна быть пустой
+     */
+    public double peekX(int robot) {
+        return pointX[headBlock[robot] * BLOCK_SIZE + headPos[robot]];
+    }
+
+    public double peekY(int robot) {
+        return pointY[headBlock[robot] * BLOCK_SIZE + headPos[robot]];
+    }
+
+    /**
+     * Удаляет первую точку очереди; очередь не должна быть пустой
+     */
+    public void poll(int robot) {
+        size[robot]--;
+        if (size[robot] == 0) {
+            clear(robot);
+            return;
+        }
+        if (++headPos[robot] == BLOCK_SIZE) {
+            int block = headBlock[robot];
+            headBlock[robot] = nextBlock[block];
+            headPos[robot] = 0;
+            releaseBlock(block);
+        }
+    }
+
+    /**
+     * Очищает очередь робота, возвращая все её блоки в пул
+     */
+    public void clear(int robot) {
+        if (robot >= headBlock.length) {
+            return;
+        }
+        int block = headBlock[robot];
+        while (block != NONE) {
+            int next = nextBlock[block];
+            releaseBlock(block);
+            if (block == tailBlock[robot]) {
+                break;
+            }
+            block = next;
+        }
+        headBlock[robot] = NONE;
+        tailBlock[robot] = NONE;
+        headPos[robot] = 0;
+        tailPos[robot] = 0;
+        size[robot] = 0;
+    }
+
+    /**
+     * Копирует точки очереди робота парами (x, y) в массив вызывающего
+     * @return количество скопированных точек
+     */
+    public int copy(int robot, double[] out) {
+        int total = Math.min(size(robot), out.length / 2);
+        int block = total > 0 ? headBlock[robot] : NONE;
+        int pos = headPos[robot];
+        for (int i = 0; i < total; i++) {
+            int slot = block * BLOCK_SIZE + pos;
+            out[i * 2] = pointX[slot];
+            out[i * 2 + 1] = pointY[slot];
+            if (++pos == BLOCK_SIZE) {
+                block = nextBlock[block];
+                pos = 0;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Заранее расширяет пул под robots очередей и blocks блоков,
+     * чтобы массовая загрузка не расширяла массивы многократно
+     */
+    public void reserve(int robots, int blocks) {
+        ensureRobots(robots);
+        int required = blockCount + blocks;
+        if (required > nextBlock.length) {
+            int capacity = Math.max(required, nextBlock.length * 2);
+            nextBlock = Arrays.copyOf(nextBlock, capacity);
+            pointX = Arrays.copyOf(pointX, Math.multiplyExact(capacity, BLOCK_SIZE));
+            pointY = Arrays.copyOf(pointY, Math.multiplyExact(capacity, BLOCK_SIZE));
+        }
+    }
+
+    private int allocateBlock() {
+        if (freeBlock != NONE) {
+            int block = freeBlock;
+            freeBlock = nextBlock[block];
+            nextBlock[block] = NONE;
+            return block;
+        }
+        if (blockCount == nextBlock.length) {
+            int capacity = blockCount * 2;
+            nextBlock = Arrays.copyOf(nextBlock, capacity);
+            pointX = Arrays.copyOf(pointX, capacity * BLOCK_SIZE);
+            pointY = Arrays.copyOf(pointY, capacity * BLOCK_SIZE);
+        }
+        nextBlock[blockCount] = NONE;
+        return blockCount++;
+    }
+
+    private void releaseBlock(int block) {
+        nextBlock[block] = freeBlock;
+        freeBlock = block;
+    }
+
+    private void ensureRobots(int required) {
+        if (required <= headBlock.length) {
+            return;
+        }
+        int oldLength = headBlock.length;
+        int capacity = Math.max(required, oldLength * 2);
+        headBlock = Arrays.copyOf(headBlock, capacity);
+        headPos = Arrays.copyOf(headPos, capacity);
+        tailBlock = Arrays.copyOf(tailBlock, capacity);
+        tailPos = Arrays.copyOf(tailPos, capacity);
+        size = Arrays.copyOf(size, capacity);
+        Arrays.fill(headBlock, oldLength, capacity, NONE);
+        Arrays.fill(tailBlock, oldLength, capacity, NONE);
+    }
+}
@@ -0,0 +1,141 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Согласованный снимок мира на конец тика: координаты, направления,
+ * положения до тика и цели всех роботов. Снимок не меняется, пока его
+ * держит хотя бы один читатель, поэтому все значения относятся к одному тику.
+ * Снимок получают через {@link RobotWorld#acquireSnapshot()} и обязательно
+ * закрывают после чтения, лучше всего в try-with-resources:
+ * закрытый снимок возвращается в пул и будет перезаписан
+ */
+public final class WorldSnapshot implements AutoCloseable {
+    /**
+     * Снимок свободен и может быть занят для записи
+     */
+    static final int FREE = 0;
+    /**
+     * Снимок заполняется потоком симуляции
+     */
+    static final int WRITING = -1;
+
+    /**
+     * Число держателей снимка: публикатор, пока снимок текущий, и читатели
+     */
+    final AtomicInteger refs = new AtomicInteger(FREE);
+
+    private long tick;
+    private int count;
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] direction = new double[0];
+    private double[] prevX = new double[0];
+    private double[] prevY = new double[0];
+    private double[] prevDirection = new double[0];
+    private double[] targetX = new double[0];
+    private double[] targetY = new double[0];
+
+    WorldSnapshot() {
+    }
+
+    /**
+     * Копирует колонки мира в снимок. Вызывается только для снимка в состоянии WRITING
+     */
+    void capture(long tick, int count, double[] x, double[] y, double[] direction,
+                 double[] prevX, double[] prevY, double[] prevDirection,
+                 double[] targetX, double[] targetY) {
+        if (this.x.length < count) {
+            int capacity = Math.max(count, this.x.length * 2);
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.direction = Arrays.copyOf(this.direction, capacity);
+            this.prevX = Arrays.copyOf(this.prevX, capacity);
+            this.prevY = Arrays.copyOf(this.prevY, capacity);
+            this.prevDirection = Arrays.copyOf(this.prevDirection, capacity);
+            this.targetX = Arrays.copyOf(this.targetX, capacity);
+            this.targetY = Arrays.copyOf(this.targetY, capacity);
+        }
+        this.tick = tick;
+        this.count = count;
+        System.arraycopy(x, 0, this.x, 0, count);
+        System.arraycopy(y, 0, this.y, 0, count);
+        System.arraycopy(direction, 0, this.direction, 0, count);
+        System.arraycopy(prevX, 0, this.prevX, 0, count);
+        System.arraycopy(prevY, 0, this.prevY, 0, count);
+        System.arraycopy(prevDirection, 0, this.prevDirection, 0, count);
+        System.arraycopy(targetX, 0, this.targetX, 0, count);
+        System.arraycopy(targetY, 0, this.targetY, 0, count);
+    }
+
+    /**
+     * Пытается захватить снимок для чтения.
+     * Не удаётся, если снимок свободен или перезаписывается
+     */
+    boolean tryRetain() {
+        int current;
+        do {
+            current = refs.get();
+            if (current <= FREE) {
+                return false;
+            }
+        } while (!refs.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    void release() {
+        refs.decrementAndGet();
+    }
+
+    /**
+     * Отпускает снимок. После закрытия читать снимок нельзя
+     */
+    @Override
+    public void close() {
+        release();
+    }
+
+    /**
+     * Номер тика, после которого сделан снимок
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public double getX(int id) {
+        return x[id];
+    }
+
+    public double getY(int id) {
+        return y[id];
+    }
+
+    public double getDirection(int id) {
+        return direction[id];
+    }
+
+    public double getPrevX(int id) {
+        return prevX[id];
+    }
+
+    public double getPrevY(int id) {
+        return prevY[id];
+    }
+
+    public double getPrevDirection(int id) {
+        return prevDirection[id];
+    }
+
+    public double getTargetX(int id) {
+        return targetX[id];
+    }
+
+    public double getTargetY(int id) {
+        return targetY[id];
+    }
+}
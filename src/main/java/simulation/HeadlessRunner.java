@@ -0,0 +1,350 @@
+package simulation;
+
+import model.InputRecorder;
+import model.KinematicsKernel;
+import model.KinematicsKernels;
+import model.ParallelTickEngine;
+import model.RobotWorld;
+import model.ScalarKinematicsKernel;
+import state.WorldCheckpoint;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Пакетный запуск симуляции без Swing. Создаёт N роботов со случайными целями,
+ * прогоняет M тиков с максимальной скоростью и печатает отчёт о пропускной
+ * способности: тики в секунду, обновления роботов в секунду, задержку тика
+ * (p50/p99) и темп выделения памяти.
+ * Запуск: {@code java -jar Robots.jar --headless --robots 100000 --ticks 1000}
+ * С ключом {@code --parity} вместо замера сверяет выбранное ядро кинематики
+ * со скалярным и завершается с кодом 1, если расхождение координат или направлений
+ * превышает допуск {@code --tolerance} (по умолчанию 1e-9). Хеши состояния
+ * у разных ядер не совпадают, их можно сравнивать только при одном ядре.
+ * С ключом {@code --record файл} входы прогона пишутся в журнал, а ключ
+ * {@code --replay файл} воспроизводит журнал с максимальной скоростью
+ * и завершается с кодом 1, если конечный хеш не совпал с записанным.
+ * Ключ {@code --checkpoint файл} начинает прогон с сохранённого мира,
+ * а {@code --save файл} сохраняет мир после прогона
+ */
+public class HeadlessRunner {
+    private static final double WORLD_SIZE = 2000;
+
+    private int robots = 10_000;
+    private double activeFraction = 1.0;
+    private int ticks = 1_000;
+    private int warmupTicks = 100;
+    private int threads = 1;
+    private long seed = 42;
+    private long advanceTicks;
+    private String kernelName;
+    private boolean parity;
+    private double tolerance = 1e-9;
+    private Path recordFile;
+    private Path replayFile;
+    private Path checkpointFile;
+    private Path saveFile;
+
+    public static void main(String[] args) {
+        HeadlessRunner runner = new HeadlessRunner();
+        try {
+            runner.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+        if (runner.parity) {
+            System.exit(runner.checkParity() ? 0 : 1);
+        }
+        try {
+            if (runner.replayFile != null) {
+                System.exit(runner.replay() ? 0 : 1);
+            }
+            runner.run();
+        } catch (IOException e) {
+            System.err.println("Journal error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: --headless [--robots N] [--active F] [--ticks M] [--warmup W] [--threads T] [--seed S] [--advance K]"
+                + " [--kernel scalar|exact|fast|vector|auto] [--parity [--tolerance E]]"
+                + " [--record FILE] [--replay FILE] [--checkpoint FILE] [--save FILE]");
+    }
+
+    void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--headless" -> { }
+                case "--robots" -> robots = parsePositive(arg, value(args, ++i, arg));
+                case "--active" -> activeFraction = parseFraction(arg, value(args, ++i, arg));
+                case "--ticks" -> ticks = parsePositive(arg, value(args, ++i, arg));
+                case "--warmup" -> warmupTicks = Math.max(0, Integer.parseInt(value(args, ++i, arg)));
+                case "--threads" -> threads = parsePositive(arg, value(args, ++i, arg));
+                case "--seed" -> seed = Long.parseLong(value(args, ++i, arg));
+                case "--advance" -> advanceTicks = Math.max(0, Long.parseLong(value(args, ++i, arg)));
+                case "--kernel" -> kernelName = value(args, ++i, arg);
+                case "--parity" -> parity = true;
+                case "--tolerance" -> tolerance = Double.parseDouble(value(args, ++i, arg));
+                case "--record" -> recordFile = Path.of(value(args, ++i, arg));
+                case "--replay" -> replayFile = Path.of(value(args, ++i, arg));
+                case "--checkpoint" -> checkpointFile = Path.of(value(args, ++i, arg));
+                case "--save" -> saveFile = Path.of(value(args, ++i, arg));
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (checkpointFile != null && recordFile != null) {
+            throw new IllegalArgumentException("--record cannot start from --checkpoint: the journal would miss the initial state");
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static double parseFraction(String option, String value) {
+        double parsed = Double.parseDouble(value);
+        if (!(parsed >= 0 && parsed <= 1)) {
+            throw new IllegalArgumentException(option + " must be between 0 and 1: " + value);
+        }
+        return parsed;
+    }
+
+    private static int parsePositive(String option, String value) {
+        int parsed = Integer.parseInt(value);
+        if (parsed <= 0) {
+            throw new IllegalArgumentException(option + " must be positive: " + value);
+        }
+        return parsed;
+    }
+
+    /**
+     * Создаёт мир из заданного числа роботов со случайными положениями и целями
+     */
+    static RobotWorld createWorld(int robots, long seed) {
+        return createWorld(robots, seed, 1.0, null);
+    }
+
+    /**
+     * Создаёт мир, как {@link #createWorld(int, long)}, записывая его наполнение
+     * @param activeFraction доля роботов, получающих цель; остальные стоят на месте
+     * @param recorder получатель входов или null
+     */
+    static RobotWorld createWorld(int robots, long seed, double activeFraction, InputRecorder recorder) {
+        Random random = new Random(seed);
+        RobotWorld world = new RobotWorld(robots);
+        world.setInputRecorder(recorder);
+        for (int i = 0; i < robots; i++) {
+            int id = world.addRobot(random.nextDouble() * WORLD_SIZE, random.nextDouble() * WORLD_SIZE);
+            if (activeFraction >= 1 || random.nextDouble() < activeFraction) {
+                world.setTarget(id, random.nextDouble() * WORLD_SIZE, random.nextDouble() * WORLD_SIZE);
+            }
+        }
+        return world;
+    }
+
+    /**
+     * Ядро из ключа --kernel, а без него - ядро по умолчанию или, при записи журнала, скалярное
+     */
+    private KinematicsKernel kernel() {
+        if (kernelName != null) {
+            return KinematicsKernels.select(kernelName);
+        }
+        return recordFile != null ? KinematicsKernels.forRecording() : KinematicsKernels.getDefault();
+    }
+
+    /**
+     * Сверяет выбранное ядро (по умолчанию векторное) со скалярным
+     * @return true, если сверка пройдена
+     */
+    boolean checkParity() {
+        KinematicsKernel candidate = KinematicsKernels.select(kernelName != null ? kernelName : "vector");
+        if (ScalarKinematicsKernel.NAME.equals(candidate.name()) && !"scalar".equals(kernelName)
+                && !"exact".equals(kernelName)) {
+            System.out.println("vector kernel unavailable: run with --add-modules jdk.incubator.vector");
+            return false;
+        }
+        KernelParity check = new KernelParity();
+        check.run(new ScalarKinematicsKernel(), candidate, robots, ticks, seed);
+        boolean passed = check.passed(tolerance, 1e-6);
+        System.out.printf("kernel:             %s vs scalar%n", candidate.name());
+        System.out.printf("lanes compared:     %d%n", check.getLanes());
+        System.out.printf("max position error: %.3g%n", check.getMaxPositionError());
+        System.out.printf("max heading error:  %.3g%n", check.getMaxDirectionError());
+        System.out.printf("decision mismatch:  %d%n", check.getDecisionMismatches());
+        System.out.println(passed ? "parity: OK" : "parity: FAILED (tolerance " + tolerance + ")");
+        return passed;
+    }
+
+    void run() throws IOException {
+        KinematicsKernel kernel = kernel();
+        InputJournal journal = recordFile != null ? new InputJournal(recordFile, kernel.name()) : null;
+        RobotWorld world;
+        if (checkpointFile != null) {
+            world = new RobotWorld();
+            long loadStart = System.nanoTime();
+            WorldCheckpoint.load(world, checkpointFile);
+            System.out.printf("checkpoint:         %s loaded in %.3f ms%n",
+                    checkpointFile, (System.nanoTime() - loadStart) / 1e6);
+            robots = world.size();
+        } else {
+            world = createWorld(robots, seed, activeFraction, journal);
+        }
+        world.setKernel(kernel);
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        if (pool != null) {
+            world.setTickEngine(new ParallelTickEngine(pool, ParallelTickEngine.DEFAULT_CHUNK_SIZE));
+        }
+
+        for (int i = 0; i < warmupTicks; i++) {
+            world.tick();
+        }
+
+        long[] latencies = new long[ticks];
+        long moved = 0;
+        long stepped = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            stepped += world.getActiveCount();
+            long tickStart = System.nanoTime();
+            moved += world.tick();
+            latencies[i] = System.nanoTime() - tickStart;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        if (pool != null) {
+            pool.shutdown();
+        }
+
+        Arrays.sort(latencies);
+        double seconds = elapsed / 1e9;
+        System.out.printf("robots:             %d%n", robots);
+        System.out.printf("ticks:              %d (warmup %d)%n", ticks, warmupTicks);
+        System.out.printf("threads:            %d%n", threads);
+        System.out.printf("kernel:             %s%n", world.getKernel().name());
+        System.out.printf("elapsed:            %.3f s%n", seconds);
+        System.out.printf("ticks/sec:          %.1f%n", ticks / seconds);
+        System.out.printf("robot-updates/sec:  %.0f (active robots stepped)%n", stepped / seconds);
+        System.out.printf("active per tick:    %.1f%n", (double) stepped / ticks);
+        System.out.printf("moved per tick:     %.1f%n", (double) moved / ticks);
+        System.out.printf("active at end:      %d%n", world.getActiveCount());
+        System.out.printf("tick latency p50:   %.3f ms%n", percentile(latencies, 0.50) / 1e6);
+        System.out.printf("tick latency p99:   %.3f ms%n", percentile(latencies, 0.99) / 1e6);
+        if (allocated >= 0) {
+            System.out.printf("allocation rate:    %.2f MB/s (%d bytes total)%n",
+                    allocated / seconds / (1024 * 1024), allocated);
+        } else {
+            System.out.println("allocation rate:    n/a");
+        }
+        System.out.printf("state hash:         %016x (comparable only with runs of the %s kernel)%n",
+                world.stateHash(), kernel.name());
+
+        if (advanceTicks > 0) {
+            long advanceStart = System.nanoTime();
+            int changed = world.advance(advanceTicks);
+            long advanceElapsed = System.nanoTime() - advanceStart;
+            System.out.printf("fast-forward:       %d ticks in %.3f ms (%d robots changed)%n",
+                    advanceTicks, advanceElapsed / 1e6, changed);
+            System.out.printf("state hash:         %016x (after fast-forward, not comparable with a stepped run)%n",
+                    world.stateHash());
+        }
+        if (saveFile != null) {
+            long saveStart = System.nanoTime();
+            long bytes = WorldCheckpoint.save(world, saveFile);
+            System.out.printf("checkpoint:         %s saved in %.3f ms (%d bytes)%n",
+                    saveFile, (System.nanoTime() - saveStart) / 1e6, bytes);
+        }
+        if (journal != null) {
+            journal.finish(world);
+            System.out.printf("journal:            %s%n", recordFile);
+        }
+    }
+
+    /**
+     * Воспроизводит журнал. Ядро берётся из журнала, если не задано ключом --kernel;
+     * с другим ядром хеш, как правило, не совпадёт
+     * @return true, если конечный хеш совпал с записанным
+     */
+    boolean replay() throws IOException {
+        try (JournalReplay journal = new JournalReplay(replayFile)) {
+            RobotWorld world = new RobotWorld();
+            world.setKernel(KinematicsKernels.select(kernelName != null ? kernelName : journal.getKernelName()));
+            if (!world.getKernel().name().equals(journal.getKernelName())) {
+                System.out.printf("warning: journal recorded with kernel %s, replaying with %s%n",
+                        journal.getKernelName(), world.getKernel().name());
+            }
+            ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+            if (pool != null) {
+                world.setTickEngine(new ParallelTickEngine(pool, ParallelTickEngine.DEFAULT_CHUNK_SIZE));
+            }
+            long start = System.nanoTime();
+            boolean matched;
+            try {
+                matched = journal.replay(world);
+            } finally {
+                if (pool != null) {
+                    pool.shutdown();
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("journal:            %s%n", replayFile);
+            System.out.printf("kernel:             %s%n", world.getKernel().name());
+            System.out.printf("robots:             %d%n", world.size());
+            System.out.printf("records:            %d (%d obstacle toggles)%n",
+                    journal.getRecords(), journal.getObstacleToggles());
+            System.out.printf("ticks:              %d%n", world.getTick());
+            System.out.printf("elapsed:            %.3f s%n", seconds);
+            System.out.printf("ticks/sec:          %.1f%n", world.getTick() / seconds);
+            System.out.printf("state hash:         %016x%n", world.stateHash());
+            if (!journal.isFinished()) {
+                System.out.println("replay: FAILED (journal has no final hash record)");
+                return false;
+            }
+            System.out.printf("expected hash:      %016x%n", journal.getExpectedHash());
+            System.out.println(matched ? "replay: OK" : "replay: FAILED (state hash mismatch)");
+            return matched;
+        }
+    }
+
+    static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Суммарный объём памяти, выделенной всеми живыми потоками JVM,
+     * или -1, если JVM не поддерживает такой учёт
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean sunBean)
+                || !sunBean.isThreadAllocatedMemorySupported()
+                || !sunBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long allocated : sunBean.getThreadAllocatedBytes(sunBean.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,185 @@
+package simulation;
+
+import model.InputRecorder;
+import model.RobotWorld;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Двоичный журнал входных воздействий на мир для детерминированного воспроизведения.
+ * Записи копятся в буфере и сбрасываются в файловый канал целыми блоками.
+ * Формат (big-endian):
+ * - заголовок: MAGIC, VERSION (short), имя ядра кинематики (short длина + UTF-8);
+ * - запись: тик (long), тип (byte), робот (int) и данные типа:
+ *   ROBOT_ADDED, TARGET, OBSTACLE - x, y (double);
+ *   WAYPOINTS, ROUTE - число точек (int) и точки парами (x, y);
+ *   WAYPOINTS_CLEARED, STEP - без данных;
+ *   ADVANCE - число тиков (long);
+ *   END - хеш состояния мира (long), в поле робота - число роботов;
+ *   TARGETS - в поле робота число роботов группы, затем для каждого робот (int), x, y (double).
+ * Все методы, кроме конструктора, вызываются в потоке, продвигающем мир
+ */
+public class InputJournal implements InputRecorder, AutoCloseable {
+    public static final int MAGIC = 0x524a4e4c;
+    public static final short VERSION = 1;
+
+    public static final byte ROBOT_ADDED = 1;
+    public static final byte TARGET = 2;
+    public static final byte WAYPOINTS = 3;
+    public static final byte WAYPOINTS_CLEARED = 4;
+    public static final byte ROUTE = 5;
+    public static final byte OBSTACLE = 6;
+    public static final byte ADVANCE = 7;
+    public static final byte STEP = 8;
+    public static final byte END = 9;
+    public static final byte TARGETS = 10;
+
+    /**
+     * Размер заголовка записи: тик, тип и робот
+     */
+    static final int RECORD_HEADER = Long.BYTES + 1 + Integer.BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private boolean closed;
+
+    /**
+     * Создаёт журнал, перезаписывая файл
+     * @param kernelName имя ядра кинематики, с которым идёт запись
+     */
+    public InputJournal(Path file, String kernelName) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        byte[] kernel = kernelName.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) kernel.length).put(kernel);
+    }
+
+    @Override
+    public void robotAdded(long tick, int robotId, double x, double y) {
+        writePoint(tick, ROBOT_ADDED, robotId, x, y);
+    }
+
+    @Override
+    public void targetSet(long tick, int robotId, double targetX, double targetY) {
+        writePoint(tick, TARGET, robotId, targetX, targetY);
+    }
+
+    @Override
+    public void targetsSet(long tick, int[] robotIds, int count, double[] targets) {
+        ByteBuffer out = header(tick, TARGETS, count, count * (Integer.BYTES + 2 * Double.BYTES));
+        for (int k = 0; k < count; k++) {
+            out.putInt(robotIds[k]).putDouble(targets[k * 2]).putDouble(targets[k * 2 + 1]);
+        }
+    }
+
+    @Override
+    public void waypointsAppended(long tick, int robotId, double[] points, int offset, int count) {
+        writePoints(tick, WAYPOINTS, robotId, points, offset, count);
+    }
+
+    @Override
+    public void waypointsCleared(long tick, int robotId) {
+        header(tick, WAYPOINTS_CLEARED, robotId, 0);
+    }
+
+    @Override
+    public void routeApplied(long tick, int robotId, double[] points) {
+        writePoints(tick, ROUTE, robotId, points, 0, points.length / 2);
+    }
+
+    @Override
+    public void advanced(long tick, int robotId, long ticks) {
+        header(tick, ADVANCE, robotId, Long.BYTES).putLong(ticks);
+    }
+
+    @Override
+    public void robotStepped(long tick, int robotId) {
+        header(tick, STEP, robotId, 0);
+    }
+
+    @Override
+    public void obstacleToggled(long tick, double x, double y) {
+        writePoint(tick, OBSTACLE, -1, x, y);
+    }
+
+    /**
+     * Дописывает итоговую запись с хешем состояния мира и закрывает журнал.
+     * Воспроизведение сверяет с ней своё конечное состояние
+     */
+    public void finish(RobotWorld world) throws IOException {
+        if (closed) {
+            return;
+        }
+        header(world.getTick(), END, world.size(), Long.BYTES).putLong(world.stateHash());
+        close();
+    }
+
+    /**
+     * Сбрасывает накопленные записи в файл
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writePoint(long tick, byte type, int robotId, double x, double y) {
+        header(tick, type, robotId, 2 * Double.BYTES).putDouble(x).putDouble(y);
+    }
+
+    private void writePoints(long tick, byte type, int robotId, double[] points, int offset, int count) {
+        ByteBuffer out = header(tick, type, robotId, Integer.BYTES + count * 2 * Double.BYTES);
+        out.putInt(count);
+        for (int i = offset * 2, end = (offset + count) * 2; i < end; i++) {
+            out.putDouble(points[i]);
+        }
+    }
+
+    /**
+     * Пишет заголовок записи, заранее освободив в буфере место под всю запись
+     * @param payload размер данных записи после заголовка
+     */
+    private ByteBuffer header(long tick, byte type, int robotId, int payload) {
+        ensureSpace(RECORD_HEADER + payload);
+        return buffer.putLong(tick).put(type).putInt(robotId);
+    }
+
+    private void ensureSpace(int bytes) {
+        if (closed) {
+            throw new IllegalStateException("Журнал закрыт");
+        }
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocateDirect(bytes);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package simulation;
+
+import model.RobotWorld;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Воспроизводит журнал {@link InputJournal} на пустом мире с максимальной скоростью:
+ * между записями мир продвигается тиками без ожидания, входы применяются
+ * в тех же тиках и в том же порядке, что и при записи.
+ * Если журнал завершён итоговой записью, мир доводится до её тика
+ * и его хеш сверяется с записанным
+ */
+public class JournalReplay implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final String kernelName;
+
+    private long records;
+    private long obstacleToggles;
+    private boolean finished;
+    private long expectedHash;
+
+    public JournalReplay(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer.flip();
+        require(Integer.BYTES + Short.BYTES + Short.BYTES);
+        if (buffer.getInt() != InputJournal.MAGIC) {
+            throw new IOException("Файл не является журналом входов: " + file);
+        }
+        short version = buffer.getShort();
+        if (version != InputJournal.VERSION) {
+            throw new IOException("Неподдерживаемая версия журнала: " + version);
+        }
+        int length = buffer.getShort() & 0xffff;
+        require(length);
+        byte[] kernel = new byte[length];
+        buffer.get(kernel);
+        kernelName = new String(kernel, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Имя ядра кинематики, с которым записан журнал
+     */
+    public String getKernelName() {
+        return kernelName;
+    }
+
+    /**
+     * Применяет все записи журнала к миру. Мир должен быть пустым
+     * и не продвигаться другими потоками
+     * @return true, если журнал завершён и хеш конечного состояния совпал с записанным
+     */
+    public boolean replay(RobotWorld world) throws IOException {
+        while (require(InputJournal.RECORD_HEADER)) {
+            long tick = buffer.getLong();
+            byte type = buffer.get();
+            int robot = buffer.getInt();
+            while (world.getTick() < tick) {
+                world.tick();
+            }
+            records++;
+            switch (type) {
+                case InputJournal.ROBOT_ADDED -> {
+                    require(2 * Double.BYTES);
+                    int id = world.addRobot(buffer.getDouble(), buffer.getDouble());
+                    if (id != robot) {
+                        throw new IOException("Робот " + robot + " воспроизведён под номером " + id);
+                    }
+                }
+                case InputJournal.TARGET -> {
+                    require(2 * Double.BYTES);
+                    world.setTarget(robot, buffer.getDouble(), buffer.getDouble());
+                }
+                case InputJournal.TARGETS -> {
+                    if (robot < 0) {
+                        throw new IOException("Отрицательный размер группы в журнале: " + robot);
+                    }
+                    require(robot * (Integer.BYTES + 2 * Double.BYTES));
+                    int[] ids = new int[robot];
+                    double[] targets = new double[robot * 2];
+                    for (int k = 0; k < robot; k++) {
+                        ids[k] = buffer.getInt();
+                        targets[k * 2] = buffer.getDouble();
+                        targets[k * 2 + 1] = buffer.getDouble();
+                    }
+                    world.setTargets(ids, robot, targets);
+                }
+                case InputJournal.WAYPOINTS -> {
+                    double[] points = readPoints();
+                    world.appendWaypoints(new int[] {robot}, new int[] {points.length / 2}, 1, points);
+                }
+                case InputJournal.WAYPOINTS_CLEARED -> world.clearWaypoints(robot);
+                case InputJournal.ROUTE -> world.applyRoute(robot, readPoints());
+                case InputJournal.OBSTACLE -> {
+                    require(2 * Double.BYTES);
+                    buffer.position(buffer.position() + 2 * Double.BYTES);
+                    obstacleToggles++;
+                }
+                case InputJournal.ADVANCE -> {
+                    require(Long.BYTES);
+                    long ticks = buffer.getLong();
+                    if (robot < 0) {
+                        world.advance(ticks);
+                    } else {
+                        world.advanceRobot(robot, ticks);
+                    }
+                }
+                case InputJournal.STEP -> world.updateRobot(robot);
+                case InputJournal.END -> {
+                    require(Long.BYTES);
+                    expectedHash = buffer.getLong();
+                    finished = true;
+                    return world.size() == robot && world.stateHash() == expectedHash;
+                }
+                default -> throw new IOException("Неизвестный тип записи журнала: " + type);
+            }
+        }
+        return false;
+    }
+
+    private double[] readPoints() throws IOException {
+        require(Integer.BYTES);
+        int count = buffer.getInt();
+        if (count < 0) {
+            throw new IOException("Отрицательное число точек в журнале: " + count);
+        }
+        double[] points = new double[count * 2];
+        require(points.length * Double.BYTES);
+        for (int i = 0; i < points.length; i++) {
+            points[i] = buffer.getDouble();
+        }
+        return points;
+    }
+
+    /**
+     * Дочитывает файл, пока в буфере не окажется bytes байт
+     * @return false, если файл закончился ровно на границе записи
+     * @throws EOFException если файл оборван посреди записи
+     */
+    private boolean require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        boolean empty = !buffer.hasRemaining();
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocate(bytes).put(buffer);
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                if (empty && !buffer.hasRemaining()) {
+                    return false;
+                }
+                throw new EOFException("Журнал оборван посреди записи");
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * Количество применённых записей
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Количество переключений препятствий. Они не влияют на состояние мира:
+     * маршруты в обход препятствий записаны в журнал готовыми
+     */
+    public long getObstacleToggles() {
+        return obstacleToggles;
+    }
+
+    /**
+     * Завершён ли журнал итоговой записью с хешем
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getExpectedHash() {
+        return expectedHash;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
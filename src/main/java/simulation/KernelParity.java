@@ -0,0 +1,103 @@
+package simulation;
+
+import model.KinematicsKernel;
+
+import java.util.Random;
+
+/**
+ * Сверка ядра кинематики с эталонным скалярным ядром.
+ * На каждом тике оба ядра делают шаг из одного и того же состояния,
+ * после чего сравниваются координаты, направления и флаги движения.
+ * Следующий тик снова начинается с эталонного состояния, поэтому ошибки
+ * не накапливаются и сравнивается именно один шаг ядра.
+ * Побитового совпадения не требуется: ядра, кроме скалярного, отличаются
+ * от него на ошибку округления, поэтому координаты и направления сравниваются
+ * с допуском, а хеш состояния не сравнивается вовсе
+ */
+final class KernelParity {
+    private static final double WORLD_SIZE = 2000;
+
+    private double maxPositionError;
+    private double maxDirectionError;
+    private long decisionMismatches;
+    private long lanes;
+
+    /**
+     * @param robots количество роботов
+     * @param ticks количество сверяемых шагов
+     * @param seed зерно случайного состояния
+     */
+    void run(KinematicsKernel reference, KinematicsKernel candidate, int robots, int ticks, long seed) {
+        Random random = new Random(seed);
+        double[] x = new double[robots];
+        double[] y = new double[robots];
+        double[] direction = new double[robots];
+        double[] targetX = new double[robots];
+        double[] targetY = new double[robots];
+        boolean[] moved = new boolean[robots];
+        for (int i = 0; i < robots; i++) {
+            x[i] = random.nextDouble() * WORLD_SIZE;
+            y[i] = random.nextDouble() * WORLD_SIZE;
+            direction[i] = (random.nextDouble() - 0.5) * 100;
+            targetX[i] = random.nextDouble() * WORLD_SIZE;
+            targetY[i] = random.nextDouble() * WORLD_SIZE;
+        }
+
+        double[] candidateX = new double[robots];
+        double[] candidateY = new double[robots];
+        double[] candidateDirection = new double[robots];
+        boolean[] candidateMoved = new boolean[robots];
+        for (int t = 0; t < ticks; t++) {
+            System.arraycopy(x, 0, candidateX, 0, robots);
+            System.arraycopy(y, 0, candidateY, 0, robots);
+            System.arraycopy(direction, 0, candidateDirection, 0, robots);
+
+            reference.step(x, y, direction, targetX, targetY, moved, 0, robots);
+            candidate.step(candidateX, candidateY, candidateDirection, targetX, targetY, candidateMoved, 0, robots);
+
+            for (int i = 0; i < robots; i++) {
+                lanes++;
+                boolean turnedDifferently = Math.abs(direction[i] - candidateDirection[i]) > 0.025;
+                if (moved[i] != candidateMoved[i] || turnedDifferently) {
+                    decisionMismatches++;
+                    continue;
+                }
+                maxPositionError = Math.max(maxPositionError,
+                        Math.max(Math.abs(x[i] - candidateX[i]), Math.abs(y[i] - candidateY[i])));
+                maxDirectionError = Math.max(maxDirectionError, Math.abs(direction[i] - candidateDirection[i]));
+                if (!moved[i]) {
+                    targetX[i] = random.nextDouble() * WORLD_SIZE;
+                    targetY[i] = random.nextDouble() * WORLD_SIZE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Сверка пройдена, если ошибки в пределах допуска, а решения
+     * (поворот или движение) разошлись не чаще, чем в mismatchRate доле шагов.
+     * Расхождение возможно только у роботов, отклонение которых лежит
+     * на самой границе 0.1 с точностью до округления
+     */
+    boolean passed(double tolerance, double mismatchRate) {
+        return maxPositionError <= tolerance
+                && maxDirectionError <= tolerance
+                && decisionMismatches <= mismatchRate * lanes;
+    }
+
+    double getMaxPositionError() {
+        return maxPositionError;
+    }
+
+    double getMaxDirectionError() {
+        return maxDirectionError;
+    }
+
+    long getDecisionMismatches() {
+        return decisionMismatches;
+    }
+
+    long getLanes() {
+        return lanes;
+    }
+}
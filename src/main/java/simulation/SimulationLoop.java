@@ -0,0 +1,317 @@
+package simulation;
+
+import model.RobotWorld;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Цикл симуляции с фиксированным шагом, работающий в собственном потоке.
+ * Реальное время копится в аккумуляторе и расходуется тиками фиксированной длины,
+ * поэтому скорость мира не зависит от загрузки интерфейса.
+ * Если поток отстал, за одну итерацию выполняется не больше maxCatchUpTicks тиков,
+ * а остаток времени отбрасывается.
+ * Входные команды (например, новые цели) ставятся в очередь и применяются
+ * в потоке симуляции перед очередным тиком.
+ * Когда в мире нет активных роботов и команд, поток полностью засыпает
+ * и просыпается от новой команды или маршрута, пришедшего из планировщика.
+ * Симуляцию можно поставить на паузу, выполнять по одному тику
+ * и ускорять или замедлять множителем скорости.
+ */
+public class SimulationLoop implements Runnable {
+    public static final double DEFAULT_TICK_RATE = 20;
+    public static final int DEFAULT_MAX_CATCH_UP_TICKS = 5;
+    public static final double MIN_SPEED = 0.25;
+    public static final double MAX_SPEED = 64;
+    /**
+     * Наименьшая пауза между итерациями при ускорении - примерно кадр 60 Гц,
+     * чтобы тики шли пачками по кадру
+     */
+    private static final long BATCH_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    private final RobotWorld world;
+    private final ThreadFactory threadFactory;
+    private final ConcurrentLinkedQueue<Runnable> inputs = new ConcurrentLinkedQueue<>();
+
+    private volatile long tickNanos;
+    private volatile int maxCatchUpTicks;
+    private volatile long lastTickTime;
+    private volatile boolean running;
+    private volatile boolean idle;
+    private volatile Thread thread;
+    private volatile LongConsumer tickTimer;
+    private volatile boolean paused;
+    private volatile double speed = 1;
+    private final AtomicInteger steps = new AtomicInteger();
+
+    public SimulationLoop(RobotWorld world) {
+        this(world, DEFAULT_TICK_RATE, DEFAULT_MAX_CATCH_UP_TICKS,
+                Thread.ofPlatform().name("simulation").daemon(true).factory());
+    }
+
+    /**
+     * @param world мир, который продвигает цикл
+     * @param ticksPerSecond частота тиков
+     * @param maxCatchUpTicks сколько тиков можно выполнить подряд, догоняя реальное время
+     * @param threadFactory фабрика потока цикла (платформенного или виртуального)
+     */
+    public SimulationLoop(RobotWorld world, double ticksPerSecond, int maxCatchUpTicks,
+                          ThreadFactory threadFactory) {
+        this.world = world;
+        this.threadFactory = threadFactory;
+        world.setWakeUpHandler(this::wakeUp);
+        setTickRate(ticksPerSecond);
+        setMaxCatchUpTicks(maxCatchUpTicks);
+    }
+
+    /**
+     * Запускает поток симуляции. Повторный запуск работающего цикла ничего не делает
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = threadFactory.newThread(this);
+        thread.start();
+    }
+
+    /**
+     * Останавливает поток симуляции и дожидается его завершения
+     */
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            current = thread;
+            thread = null;
+        }
+        LockSupport.unpark(current);
+        if (current != Thread.currentThread()) {
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Ставит входную команду в очередь. Команда выполнится в потоке
+     * симуляции перед ближайшим тиком
+     */
+    public void execute(Runnable input) {
+        inputs.add(input);
+        wakeUp();
+    }
+
+    /**
+     * Будит поток симуляции, если он спит без дела
+     */
+    private void wakeUp() {
+        if (idle) {
+            Thread current = thread;
+            if (current != null) {
+                LockSupport.unpark(current);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        while (running) {
+            if (paused) {
+                if (drainInputs()) {
+                    world.publishSnapshot();
+                }
+                if (steps.get() > 0) {
+                    steps.decrementAndGet();
+                    tick();
+                    lastTickTime = System.nanoTime();
+                    continue;
+                }
+            }
+            if (inputs.isEmpty() && isWaiting()) {
+                idle = true;
+                if (inputs.isEmpty() && isWaiting() && running) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                previous = System.nanoTime();
+                accumulator = tickNanos;
+                continue;
+            }
+            if (paused) {
+                continue;
+            }
+            long now = System.nanoTime();
+            double rate = speed;
+            accumulator += (long) ((now - previous) * rate);
+            previous = now;
+
+            long step = tickNanos;
+            long ticks = Math.min(accumulator / step, (long) maxCatchUpTicks * (long) Math.ceil(rate));
+            for (long k = ticks - 1; k >= 0; k--) {
+                drainInputs();
+                world.setSnapshotsDeferred(k > 0);
+                tick();
+                accumulator -= step;
+            }
+            if (accumulator >= step) {
+                accumulator %= step;
+            }
+            lastTickTime = now - (long) (accumulator / rate);
+
+            long wait = (long) ((step - accumulator) / rate);
+            LockSupport.parkNanos(this, rate > 1 ? Math.max(wait, BATCH_NANOS) : wait);
+        }
+        drainInputs();
+    }
+
+    /**
+     * Спать ли потоку до внешнего события: на паузе - пока не попросят шаг,
+     * иначе - пока в мире нет активных роботов
+     */
+    private boolean isWaiting() {
+        return paused ? steps.get() == 0 : world.isIdle();
+    }
+
+    private void tick() {
+        LongConsumer timer = tickTimer;
+        if (timer != null) {
+            long start = System.nanoTime();
+            world.tick();
+            timer.accept(System.nanoTime() - start);
+        } else {
+            world.tick();
+        }
+    }
+
+    /**
+     * @return true, если была выполнена хотя бы одна команда
+     */
+    private boolean drainInputs() {
+        boolean drained = false;
+        Runnable input;
+        while ((input = inputs.poll()) != null) {
+            input.run();
+            drained = true;
+        }
+        return drained;
+    }
+
+    /**
+     * Ставит симуляцию на паузу: тики не выполняются, а входные команды
+     * применяются сразу и публикуются снимком
+     */
+    public void pause() {
+        paused = true;
+        wakeUp();
+    }
+
+    /**
+     * Снимает симуляцию с паузы
+     */
+    public void resume() {
+        paused = false;
+        wakeUp();
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Выполняет один тик на паузе. Если симуляция не на паузе, сначала ставит её на паузу
+     */
+    public void step() {
+        paused = true;
+        steps.incrementAndGet();
+        wakeUp();
+    }
+
+    /**
+     * Задаёт множитель скорости от {@value #MIN_SPEED} до {@value #MAX_SPEED}.
+     * При ускорении за одну итерацию выполняется несколько тиков,
+     * и снимок для отрисовки публикуется только после последнего из них
+     */
+    public void setSpeed(double speed) {
+        if (!(speed >= MIN_SPEED && speed <= MAX_SPEED)) {
+            throw new IllegalArgumentException("Множитель скорости должен быть от " + MIN_SPEED
+                    + " до " + MAX_SPEED + ": " + speed);
+        }
+        this.speed = speed;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Возвращает долю прошедшего времени между последним и следующим тиком (от 0 до 1).
+     * Доля считается по часам в момент вызова, поэтому кадры, нарисованные
+     * между двумя тиками, получают разные значения.
+     * Используется при отрисовке для интерполяции между двумя состояниями мира
+     */
+    public double getAlpha() {
+        double alpha = (System.nanoTime() - lastTickTime) * speed / tickNanos;
+        return Math.max(0, Math.min(1, alpha));
+    }
+
+    /**
+     * Длительность одного тика в наносекундах реального времени с учётом множителя скорости
+     */
+    public long getTickNanos() {
+        return (long) (tickNanos / speed);
+    }
+
+    /**
+     * Спит ли поток симуляции из-за отсутствия активных роботов и команд
+     */
+    public boolean isIdle() {
+        return idle;
+    }
+
+    public void setTickRate(double ticksPerSecond) {
+        if (!(ticksPerSecond > 0)) {
+            throw new IllegalArgumentException("Частота тиков должна быть положительной: " + ticksPerSecond);
+        }
+        tickNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ticksPerSecond));
+    }
+
+    public double getTickRate() {
+        return (double) TimeUnit.SECONDS.toNanos(1) / tickNanos;
+    }
+
+    public void setMaxCatchUpTicks(int maxCatchUpTicks) {
+        if (maxCatchUpTicks <= 0) {
+            throw new IllegalArgumentException("Лимит догоняющих тиков должен быть положительным: " + maxCatchUpTicks);
+        }
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    /**
+     * Задаёт получателя длительности каждого тика в наносекундах или null.
+     * Вызывается в потоке симуляции
+     */
+    public void setTickTimer(LongConsumer tickTimer) {
+        this.tickTimer = tickTimer;
+    }
+
+    public RobotWorld getWorld() {
+        return world;
+    }
+}
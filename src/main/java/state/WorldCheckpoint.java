@@ -0,0 +1,139 @@
+package state;
+
+import model.RobotWorld;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Сохранение и восстановление состояния мира роботов.
+ * Файл состоит из заголовка фиксированного размера и блоков колонок,
+ * которые копируются в отображённый в память файл и обратно целыми массивами,
+ * поэтому сохранение миллиона роботов не создаёт объектов на каждого робота.
+ * Формат (little-endian):
+ * - заголовок {@value #HEADER_SIZE} байт: MAGIC, VERSION, число роботов (int),
+ *   число колонок (int), тик (long), число путевых точек (long);
+ * - колонки {@link RobotWorld.Column} по порядку, по double на робота;
+ * - длины очередей путевых точек, по int на робота, с выравниванием до 8 байт;
+ * - точки очередей подряд парами (x, y).
+ * Методы вызываются в потоке, продвигающем мир
+ */
+public final class WorldCheckpoint {
+    public static final int MAGIC = 0x5242434b;
+    public static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    private WorldCheckpoint() {
+    }
+
+    /**
+     * Сохраняет мир в файл, перезаписывая его
+     * @return размер файла в байтах
+     */
+    public static long save(RobotWorld world, Path file) throws IOException {
+        int robots = world.size();
+        long points = world.getTotalWaypointCount();
+        RobotWorld.Column[] columns = RobotWorld.Column.values();
+        long countsOffset = HEADER_SIZE + (long) columns.length * robots * Double.BYTES;
+        long pointsOffset = align(countsOffset + (long) robots * Integer.BYTES);
+        long size = pointsOffset + points * 2 * Double.BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(robots).putInt(columns.length)
+                    .putLong(world.getTick()).putLong(points);
+            long offset = HEADER_SIZE;
+            for (RobotWorld.Column column : columns) {
+                world.exportColumn(column, map(channel, FileChannel.MapMode.READ_WRITE, offset,
+                        (long) robots * Double.BYTES).asDoubleBuffer());
+                offset += (long) robots * Double.BYTES;
+            }
+            IntBuffer counts = map(channel, FileChannel.MapMode.READ_WRITE, countsOffset,
+                    (long) robots * Integer.BYTES).asIntBuffer();
+            DoubleBuffer pointBuffer = map(channel, FileChannel.MapMode.READ_WRITE, pointsOffset,
+                    points * 2 * Double.BYTES).asDoubleBuffer();
+            world.exportWaypoints(counts, pointBuffer, null);
+        }
+        return size;
+    }
+
+    /**
+     * Восстанавливает сохранённое состояние в мир, см. {@link RobotWorld#restore}
+     */
+    public static void load(RobotWorld world, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Файл слишком мал для сохранения мира: " + file);
+            }
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Файл не является сохранением мира: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия сохранения: " + version);
+            }
+            int robots = header.getInt();
+            int columnCount = header.getInt();
+            long tick = header.getLong();
+            long points = header.getLong();
+            RobotWorld.Column[] columns = RobotWorld.Column.values();
+            if (robots < 0 || points < 0 || columnCount != columns.length) {
+                throw new IOException("Повреждённый заголовок сохранения: " + file);
+            }
+            long countsOffset = HEADER_SIZE + (long) columns.length * robots * Double.BYTES;
+            long pointsOffset = align(countsOffset + (long) robots * Integer.BYTES);
+            if (channel.size() < pointsOffset + points * 2 * Double.BYTES) {
+                throw new IOException("Сохранение обрезано: " + file);
+            }
+
+            DoubleBuffer[] buffers = new DoubleBuffer[columns.length];
+            long offset = HEADER_SIZE;
+            for (RobotWorld.Column column : columns) {
+                buffers[column.ordinal()] = map(channel, FileChannel.MapMode.READ_ONLY, offset,
+                        (long) robots * Double.BYTES).asDoubleBuffer();
+                offset += (long) robots * Double.BYTES;
+            }
+            int[] counts = new int[robots];
+            map(channel, FileChannel.MapMode.READ_ONLY, countsOffset,
+                    (long) robots * Integer.BYTES).asIntBuffer().get(counts);
+            long total = 0;
+            for (int size : counts) {
+                if (size < 0) {
+                    throw new IOException("Повреждённые длины очередей в сохранении: " + file);
+                }
+                total += size;
+            }
+            if (total != points) {
+                throw new IOException("Длины очередей не сходятся с числом точек (" + total + " и " + points + "): " + file);
+            }
+            DoubleBuffer pointBuffer = map(channel, FileChannel.MapMode.READ_ONLY, pointsOffset,
+                    points * 2 * Double.BYTES).asDoubleBuffer();
+            world.restore(robots, tick, buffers, counts, pointBuffer);
+        }
+    }
+
+    /**
+     * Отображает участок файла в память. Один участок не может быть
+     * больше 2 ГБ, что соответствует 268 миллионам роботов на колонку
+     */
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long offset, long size)
+            throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Блок сохранения больше 2 ГБ: " + size);
+        }
+        MappedByteBuffer buffer = channel.map(mode, offset, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
@@ -0,0 +1,110 @@
+package view;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferStrategy;
+import java.util.function.Consumer;
+
+/**
+ * Холст активной отрисовки: кадр рисуется во внеэкранный буфер
+ * {@link BufferStrategy} и показывается целиком, минуя механизм repaint Swing.
+ * Системные запросы перерисовки игнорируются и передаются планировщику кадров.
+ * События мыши пересылаются владельцу, чтобы обработчики, подписанные на него,
+ * работали так же, как в обычном режиме. Используется только в EDT
+ */
+final class ActiveRenderSurface extends Canvas {
+    private static final int BUFFERS = 2;
+
+    private final JComponent owner;
+    private final Runnable exposed;
+
+    /**
+     * @param owner компонент, которому пересылаются события мыши
+     * @param exposed вызывается, когда система просит перерисовать холст
+     */
+    ActiveRenderSurface(JComponent owner, Runnable exposed) {
+        this.owner = owner;
+        this.exposed = exposed;
+        setIgnoreRepaint(true);
+        MouseAdapter forward = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                redispatch(e);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                redispatch(e);
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                redispatch(e);
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                redispatch(e);
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                redispatch(e);
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                redispatch(e);
+            }
+        };
+        addMouseListener(forward);
+        addMouseMotionListener(forward);
+        addMouseWheelListener(forward);
+    }
+
+    private void redispatch(MouseEvent e) {
+        owner.dispatchEvent(SwingUtilities.convertMouseEvent(this, e, owner));
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        exposed.run();
+    }
+
+    @Override
+    public void update(Graphics g) {
+        exposed.run();
+    }
+
+    /**
+     * Рисует кадр целиком и показывает его. Если содержимое буфера
+     * было потеряно, кадр рисуется заново
+     * @param painter рисует сцену в переданный контекст
+     */
+    void render(Consumer<Graphics2D> painter) {
+        if (!isDisplayable() || getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        BufferStrategy strategy = getBufferStrategy();
+        if (strategy == null) {
+            createBufferStrategy(BUFFERS);
+            strategy = getBufferStrategy();
+        }
+        do {
+            do {
+                Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    g.setClip(0, 0, getWidth(), getHeight());
+                    painter.accept(g);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+}
@@ -0,0 +1,165 @@
+package view;
+
+/**
+ * Камера игрового поля: левый верхний угол видимой области в координатах мира
+ * и масштаб. Экранная точка получается как (мировая - угол) * масштаб.
+ * Масштаб меняется ступенями по корню четвёртой степени из двух, чтобы
+ * атлас спрайтов не перестраивался на каждое движение колеса.
+ * Меняется только в EDT, а читается также потоком симуляции при расчёте грязных областей:
+ * он берёт {@link View} один раз на расчёт
+ */
+public class Camera {
+    /**
+     * Уровень детализации отрисовки роботов
+     */
+    public enum Detail {
+        /** Спрайты с указателем направления, следы и цели */
+        SPRITES,
+        /** Робот рисуется одной точкой */
+        POINTS,
+        /** Плотность роботов по ячейкам экрана */
+        HEATMAP
+    }
+
+    private static final int STEPS_PER_DOUBLING = 4;
+    private static final int MIN_LEVEL = -6 * STEPS_PER_DOUBLING;
+    private static final int MAX_LEVEL = 3 * STEPS_PER_DOUBLING;
+    /**
+     * Наименьший масштаб, при котором роботы ещё рисуются спрайтами
+     */
+    public static final double SPRITE_ZOOM = 0.5;
+    /**
+     * Наименьший масштаб, при котором роботы рисуются точками
+     */
+    public static final double POINT_ZOOM = 0.125;
+
+    /**
+     * Неизменяемое состояние камеры. Камера публикует его целиком
+     * через одно volatile-поле, поэтому поток симуляции, взявший вид один раз,
+     * не смешает угол и масштаб до и после изменения в EDT
+     */
+    public static final class View {
+        private final double originX;
+        private final double originY;
+        private final int level;
+        private final double zoom;
+
+        private View(double originX, double originY, int level, double zoom) {
+            this.originX = originX;
+            this.originY = originY;
+            this.level = level;
+            this.zoom = zoom;
+        }
+
+        public double getOriginX() {
+            return originX;
+        }
+
+        public double getOriginY() {
+            return originY;
+        }
+
+        public double getZoom() {
+            return zoom;
+        }
+
+        public Detail getDetail() {
+            if (zoom >= SPRITE_ZOOM) {
+                return Detail.SPRITES;
+            }
+            return zoom >= POINT_ZOOM ? Detail.POINTS : Detail.HEATMAP;
+        }
+
+        public double toWorldX(double screenX) {
+            return originX + screenX / zoom;
+        }
+
+        public double toWorldY(double screenY) {
+            return originY + screenY / zoom;
+        }
+
+        public double toScreenX(double worldX) {
+            return (worldX - originX) * zoom;
+        }
+
+        public double toScreenY(double worldY) {
+            return (worldY - originY) * zoom;
+        }
+    }
+
+    private static final View ORIGIN = new View(0, 0, 0, 1);
+
+    private volatile View view = ORIGIN;
+
+    /**
+     * Текущее состояние камеры одним согласованным снимком
+     */
+    public View getView() {
+        return view;
+    }
+
+    public double getOriginX() {
+        return view.getOriginX();
+    }
+
+    public double getOriginY() {
+        return view.getOriginY();
+    }
+
+    public double getZoom() {
+        return view.getZoom();
+    }
+
+    public Detail getDetail() {
+        return view.getDetail();
+    }
+
+    public double toWorldX(double screenX) {
+        return view.toWorldX(screenX);
+    }
+
+    public double toWorldY(double screenY) {
+        return view.toWorldY(screenY);
+    }
+
+    public double toScreenX(double worldX) {
+        return view.toScreenX(worldX);
+    }
+
+    public double toScreenY(double worldY) {
+        return view.toScreenY(worldY);
+    }
+
+    /**
+     * Сдвигает видимую область на заданное число экранных пикселей
+     */
+    public void pan(double screenDx, double screenDy) {
+        View current = view;
+        view = new View(current.originX - screenDx / current.zoom, current.originY - screenDy / current.zoom,
+                current.level, current.zoom);
+    }
+
+    /**
+     * Меняет масштаб на steps ступеней, оставляя на месте мировую точку под (screenX, screenY)
+     * @return true, если масштаб изменился
+     */
+    public boolean zoomAt(double screenX, double screenY, int steps) {
+        View current = view;
+        int next = Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, current.level + steps));
+        if (next == current.level) {
+            return false;
+        }
+        double worldX = current.toWorldX(screenX);
+        double worldY = current.toWorldY(screenY);
+        double zoom = Math.pow(2, (double) next / STEPS_PER_DOUBLING);
+        view = new View(worldX - screenX / zoom, worldY - screenY / zoom, next, zoom);
+        return true;
+    }
+
+    /**
+     * Возвращает камеру в начало мира с масштабом 1
+     */
+    public void reset() {
+        view = ORIGIN;
+    }
+}
@@ -0,0 +1,122 @@
+package view;
+
+import model.WorldSnapshot;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Отрисовка роботов при мелком масштабе. Роботы пишутся прямо в массив пикселей
+ * изображения размером с видимую область (точками) или в счётчики ячеек
+ * (тепловая карта плотности), и на экран выводится одна картинка.
+ * Стоимость кадра линейна по числу роботов и не зависит от числа вызовов Graphics.
+ * Используется только в EDT
+ */
+final class DensityRaster {
+    /**
+     * Размер ячейки тепловой карты в экранных пикселях
+     */
+    static final int HEAT_CELL = 8;
+    private static final int POINT_COLOR = 0xff000000;
+    private static final int SELECTED_COLOR = 0xff0000ff;
+
+    private final int[] palette = createPalette();
+    private BufferedImage image;
+    private int[] pixels;
+    private int[] counts = new int[0];
+
+    /**
+     * Рисует каждого видимого робота одним пикселем, выделенных - синим
+     * @param alpha доля интерполяции между прошлым и текущим тиком
+     */
+    void drawPoints(Graphics g, WorldSnapshot snapshot, double alpha, Camera camera, int width, int height,
+                    Selection selection) {
+        if (!prepare(width, height)) {
+            return;
+        }
+        int stride = image.getWidth();
+        for (int row = 0; row < height; row++) {
+            Arrays.fill(pixels, row * stride, row * stride + width, 0);
+        }
+        double zoom = camera.getZoom();
+        double originX = camera.getOriginX();
+        double originY = camera.getOriginY();
+        for (int i = 0, count = snapshot.size(); i < count; i++) {
+            double x = snapshot.getPrevX(i) + (snapshot.getX(i) - snapshot.getPrevX(i)) * alpha;
+            double y = snapshot.getPrevY(i) + (snapshot.getY(i) - snapshot.getPrevY(i)) * alpha;
+            int screenX = (int) Math.floor((x - originX) * zoom);
+            int screenY = (int) Math.floor((y - originY) * zoom);
+            if (screenX >= 0 && screenX < width && screenY >= 0 && screenY < height) {
+                pixels[screenY * stride + screenX] = selection.contains(i) ? SELECTED_COLOR : POINT_COLOR;
+            }
+        }
+        g.drawImage(image, 0, 0, width, height, 0, 0, width, height, null);
+    }
+
+    /**
+     * Рисует число роботов в ячейках {@value #HEAT_CELL}x{@value #HEAT_CELL} пикселей
+     * цветом от прозрачно-синего (мало) до красного (больше всего в кадре)
+     */
+    void drawHeatmap(Graphics g, WorldSnapshot snapshot, Camera camera, int width, int height) {
+        int columns = (width + HEAT_CELL - 1) / HEAT_CELL;
+        int rows = (height + HEAT_CELL - 1) / HEAT_CELL;
+        if (!prepare(columns, rows)) {
+            return;
+        }
+        if (counts.length < columns * rows) {
+            counts = new int[columns * rows];
+        }
+        Arrays.fill(counts, 0, columns * rows, 0);
+        double scale = camera.getZoom() / HEAT_CELL;
+        double originX = camera.getOriginX();
+        double originY = camera.getOriginY();
+        int max = 0;
+        for (int i = 0, count = snapshot.size(); i < count; i++) {
+            int column = (int) Math.floor((snapshot.getX(i) - originX) * scale);
+            int row = (int) Math.floor((snapshot.getY(i) - originY) * scale);
+            if (column >= 0 && column < columns && row >= 0 && row < rows) {
+                int cell = row * columns + column;
+                max = Math.max(max, ++counts[cell]);
+            }
+        }
+        int stride = image.getWidth();
+        double normalize = max > 0 ? (palette.length - 1) / Math.sqrt(max) : 0;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int value = counts[row * columns + column];
+                pixels[row * stride + column] = value == 0 ? 0 : palette[(int) (Math.sqrt(value) * normalize)];
+            }
+        }
+        g.drawImage(image, 0, 0, columns * HEAT_CELL, rows * HEAT_CELL, 0, 0, columns, rows, null);
+    }
+
+    /**
+     * Готовит изображение не меньше заданного размера
+     * @return false, если рисовать некуда
+     */
+    private boolean prepare(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        if (image == null || image.getWidth() < width || image.getHeight() < height) {
+            int imageWidth = Math.max(width, image != null ? image.getWidth() : 0);
+            int imageHeight = Math.max(height, image != null ? image.getHeight() : 0);
+            image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        return true;
+    }
+
+    private static int[] createPalette() {
+        int[] colors = new int[256];
+        for (int i = 0; i < colors.length; i++) {
+            int alpha = 64 + i * 191 / 255;
+            int red = i;
+            int blue = 255 - i;
+            colors[i] = alpha << 24 | red << 16 | blue;
+        }
+        return colors;
+    }
+}
@@ -0,0 +1,214 @@
+package view;
+
+import model.TrajectoryHistory;
+
+import java.util.Arrays;
+
+/**
+ * Собирает за тик область поля, которую нужно перерисовать.
+ * Для каждого робота запоминается последнее известное положение и цель,
+ * а также область, занятая роботом (и его следом) за прошлый тик.
+ * След учитывается описанным прямоугольником, который история хранит
+ * для каждого робота, поэтому сдвиг стоит O(1) независимо от длины следа.
+ * Сдвиг робота добавляет к грязной области его прошлую и новую область:
+ * так стирается кадр, нарисованный с интерполяцией между тиками.
+ * Робот, который перестал двигаться, перерисовывается ещё один раз,
+ * чтобы кадр показал его конечное положение.
+ * Все методы вызываются в потоке, продвигающем мир
+ */
+final class DirtyRegions {
+    /**
+     * Половина длины корпуса вместе с указателем направления
+     */
+    private static final double BODY_HALF_LENGTH = 22;
+    private static final double BODY_HALF_WIDTH = 5;
+    private static final int TARGET_RADIUS = 5;
+    private static final int SELECTION_RADIUS = 23;
+    /**
+     * Запас на округление координат и поворот при интерполяции
+     */
+    private static final int PAD = 2;
+
+    private double[] poseX = new double[0];
+    private double[] poseY = new double[0];
+    private double[] poseDirection = new double[0];
+    private double[] targetX = new double[0];
+    private double[] targetY = new double[0];
+    private int[] regionMinX = new int[0];
+    private int[] regionMinY = new int[0];
+    private int[] regionMaxX = new int[0];
+    private int[] regionMaxY = new int[0];
+    private long[] movedGeneration = new long[0];
+    private int[] movedNow = new int[16];
+    private int movedNowCount;
+    private int[] movedBefore = new int[16];
+    private int movedBeforeCount;
+    private long generation = 1;
+
+    private TrajectoryHistory history;
+    private final double[] trailBounds = new double[4];
+
+    private int minX = Integer.MAX_VALUE;
+    private int minY = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE;
+    private int maxY = Integer.MIN_VALUE;
+
+    void setHistory(TrajectoryHistory history) {
+        this.history = history;
+    }
+
+    void robotAdded(int id, double x, double y, double direction, double goalX, double goalY) {
+        ensureCapacity(id + 1);
+        poseX[id] = x;
+        poseY[id] = y;
+        poseDirection[id] = direction;
+        targetX[id] = goalX;
+        targetY[id] = goalY;
+        regionMinX[id] = (int) Math.floor(x) - SELECTION_RADIUS;
+        regionMinY[id] = (int) Math.floor(y) - SELECTION_RADIUS;
+        regionMaxX[id] = (int) Math.ceil(x) + SELECTION_RADIUS;
+        regionMaxY[id] = (int) Math.ceil(y) + SELECTION_RADIUS;
+        add(regionMinX[id], regionMinY[id], regionMaxX[id], regionMaxY[id]);
+        addTarget(goalX, goalY);
+    }
+
+    /**
+     * Робот сдвинулся или повернулся
+     * @param selected выделен ли робот (вокруг него рисуется окружность)
+     */
+    void robotMoved(int id, double x, double y, double direction, boolean selected) {
+        int previousMinX = regionMinX[id];
+        int previousMinY = regionMinY[id];
+        int previousMaxX = regionMaxX[id];
+        int previousMaxY = regionMaxY[id];
+
+        double halfX = Math.max(extentX(poseDirection[id]), extentX(direction));
+        double halfY = Math.max(extentY(poseDirection[id]), extentY(direction));
+        if (selected) {
+            halfX = Math.max(halfX, SELECTION_RADIUS);
+            halfY = Math.max(halfY, SELECTION_RADIUS);
+        }
+        double left = Math.min(poseX[id], x) - halfX;
+        double top = Math.min(poseY[id], y) - halfY;
+        double right = Math.max(poseX[id], x) + halfX;
+        double bottom = Math.max(poseY[id], y) + halfY;
+        if (history != null && history.readBounds(id, trailBounds)) {
+            left = Math.min(left, trailBounds[0]);
+            top = Math.min(top, trailBounds[1]);
+            right = Math.max(right, trailBounds[2]);
+            bottom = Math.max(bottom, trailBounds[3]);
+        }
+        regionMinX[id] = (int) Math.floor(left) - PAD;
+        regionMinY[id] = (int) Math.floor(top) - PAD;
+        regionMaxX[id] = (int) Math.ceil(right) + PAD;
+        regionMaxY[id] = (int) Math.ceil(bottom) + PAD;
+        add(previousMinX, previousMinY, previousMaxX, previousMaxY);
+        add(regionMinX[id], regionMinY[id], regionMaxX[id], regionMaxY[id]);
+
+        poseX[id] = x;
+        poseY[id] = y;
+        poseDirection[id] = direction;
+        if (movedGeneration[id] != generation) {
+            movedGeneration[id] = generation;
+            if (movedNowCount == movedNow.length) {
+                movedNow = Arrays.copyOf(movedNow, movedNowCount * 2);
+            }
+            movedNow[movedNowCount++] = id;
+        }
+    }
+
+    void targetChanged(int id, double goalX, double goalY) {
+        addTarget(targetX[id], targetY[id]);
+        targetX[id] = goalX;
+        targetY[id] = goalY;
+        addTarget(goalX, goalY);
+    }
+
+    /**
+     * Завершает тик: добавляет области роботов, остановившихся в этом тике
+     * @return true, если есть что перерисовывать; границы - в getX/getY/getWidth/getHeight
+     */
+    boolean tickCompleted() {
+        for (int k = 0; k < movedBeforeCount; k++) {
+            int id = movedBefore[k];
+            if (movedGeneration[id] != generation) {
+                add(regionMinX[id], regionMinY[id], regionMaxX[id], regionMaxY[id]);
+            }
+        }
+        int[] swap = movedBefore;
+        movedBefore = movedNow;
+        movedBeforeCount = movedNowCount;
+        movedNow = swap;
+        movedNowCount = 0;
+        generation++;
+        return minX <= maxX;
+    }
+
+    /**
+     * Сбрасывает накопленную область после того, как она передана на перерисовку
+     */
+    void clear() {
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        maxY = Integer.MIN_VALUE;
+    }
+
+    int getX() {
+        return minX;
+    }
+
+    int getY() {
+        return minY;
+    }
+
+    int getWidth() {
+        return maxX - minX + 1;
+    }
+
+    int getHeight() {
+        return maxY - minY + 1;
+    }
+
+    /**
+     * Половина ширины описанного прямоугольника повёрнутого корпуса
+     */
+    private static double extentX(double direction) {
+        return Math.abs(BODY_HALF_LENGTH * Math.cos(direction)) + Math.abs(BODY_HALF_WIDTH * Math.sin(direction));
+    }
+
+    private static double extentY(double direction) {
+        return Math.abs(BODY_HALF_LENGTH * Math.sin(direction)) + Math.abs(BODY_HALF_WIDTH * Math.cos(direction));
+    }
+
+    private void addTarget(double x, double y) {
+        int centerX = (int) x;
+        int centerY = (int) y;
+        add(centerX - TARGET_RADIUS - 1, centerY - TARGET_RADIUS - 1,
+                centerX + TARGET_RADIUS + 1, centerY + TARGET_RADIUS + 1);
+    }
+
+    private void add(int left, int top, int right, int bottom) {
+        minX = Math.min(minX, left);
+        minY = Math.min(minY, top);
+        maxX = Math.max(maxX, right);
+        maxY = Math.max(maxY, bottom);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= poseX.length) {
+            return;
+        }
+        int capacity = Math.max(required, Math.max(16, poseX.length * 2));
+        poseX = Arrays.copyOf(poseX, capacity);
+        poseY = Arrays.copyOf(poseY, capacity);
+        poseDirection = Arrays.copyOf(poseDirection, capacity);
+        targetX = Arrays.copyOf(targetX, capacity);
+        targetY = Arrays.copyOf(targetY, capacity);
+        regionMinX = Arrays.copyOf(regionMinX, capacity);
+        regionMinY = Arrays.copyOf(regionMinY, capacity);
+        regionMaxX = Arrays.copyOf(regionMaxX, capacity);
+        regionMaxY = Arrays.copyOf(regionMaxY, capacity);
+        movedGeneration = Arrays.copyOf(movedGeneration, capacity);
+    }
+}
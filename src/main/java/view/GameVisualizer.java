@@ -1,51 +1,447 @@
 package view;
 
-import model.RobotModel;
+import model.ObstacleMap;
+import model.RobotListener;
+import model.RobotWorld;
+import model.TrajectoryHistory;
+import model.WorldSnapshot;
+import simulation.SimulationLoop;
 
 import javax.swing.*;
 import java.awt.*;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
 
 /**
- * Рисует робота и точку, после клика мышью
+ * Рисует роботов мира и их точки-цели, после клика мышью.
+ * Состояние читается из опубликованного снимка мира, поэтому кадр
+ * не смешивает значения разных тиков.
+ * После тика перерисовывается только объединение областей, которые
+ * занимали и занимают сдвинувшиеся роботы, их следы и изменившиеся цели.
+ * Кадры рисует {@link RenderScheduler}: изменения объединяются, а частота
+ * кадров ограничена частотой экрана. Со свойством {@value #ACTIVE_RENDERING_PROPERTY}
+ * кадры рисуются активно в холст с {@link java.awt.image.BufferStrategy}.
+ * Поле показывается через {@link Camera}: роботы вне видимой области не рисуются,
+ * а при уменьшении масштаба спрайты сменяются точками, а затем тепловой картой плотности
  */
-public class GameVisualizer extends JPanel implements PropertyChangeListener {
-    private final RobotModel model;
+public class GameVisualizer extends JPanel implements RobotListener {
+    /**
+     * Радиус, в который помещается повёрнутый робот с указателем направления
+     */
+    static final int ROBOT_RADIUS = 23;
+    static final int TARGET_RADIUS = 6;
+    /**
+     * Системное свойство, включающее активную отрисовку
+     */
+    public static final String ACTIVE_RENDERING_PROPERTY = "robots.render.active";
+    /**
+     * Системное свойство, включающее многопоточную отрисовку плитками
+     */
+    public static final String TILED_RENDERING_PROPERTY = "robots.render.tiled";
+    /**
+     * Сколько выделенных роботов отмечается кружками при мелком масштабе
+     */
+    private static final int MAX_SELECTION_MARKERS = 256;
 
-    public GameVisualizer(RobotModel model) {
-        this.model = model;
-        model.addPropertyChangeListener(this);
+    private final RobotWorld world;
+    private SimulationLoop loop;
+    private volatile Selection selection = Selection.EMPTY;
+    private volatile Rectangle rubberBand;
+    private ObstacleMap obstacles;
+    private volatile int paintedObstacleVersion;
+    private TrajectoryHistory history;
+    private final TrailPainter trails = new TrailPainter();
+    private final DirtyRegions dirty = new DirtyRegions();
+    private final RobotSpriteAtlas sprites = RobotSpriteAtlas.fromSystemProperties();
+    private final RenderScheduler scheduler = new RenderScheduler(this::renderFrame, RenderScheduler.defaultFrameRate());
+    private final ActiveRenderSurface surface;
+    private final Camera camera = new Camera();
+    private final DensityRaster raster = new DensityRaster();
+    private final TiledRasterizer tiles;
+    private final PerformanceHud hud = new PerformanceHud(this::refreshHud);
+    private final Rectangle hudBounds = hud.getBounds();
+
+    /**
+     * Создаёт панель и подписывает её на мир. Вызывается до запуска цикла симуляции
+     */
+    public GameVisualizer(RobotWorld world) {
+        this.world = world;
+        for (int i = 0; i < world.size(); i++) {
+            dirty.robotAdded(i, world.getX(i), world.getY(i), world.getDirection(i),
+                    world.getTargetX(i), world.getTargetY(i));
+        }
+        dirty.clear();
+        world.addListener(this);
         setDoubleBuffered(true);
+        if (Boolean.getBoolean(ACTIVE_RENDERING_PROPERTY)) {
+            surface = new ActiveRenderSurface(this, scheduler::requestFull);
+            setLayout(new BorderLayout());
+            add(surface, BorderLayout.CENTER);
+        } else {
+            surface = null;
+        }
+        tiles = Boolean.getBoolean(TILED_RENDERING_PROPERTY)
+                ? new TiledRasterizer(Runtime.getRuntime().availableProcessors() - 1, this::showTiledFrame)
+                : null;
+    }
+
+    /**
+     * Задаёт цикл симуляции, по доле времени которого положение роботов
+     * интерполируется между двумя последними тиками
+     */
+    public void setSimulationLoop(SimulationLoop loop) {
+        this.loop = loop;
+    }
+
+    /**
+     * Задаёт карту препятствий, которая рисуется под роботами
+     */
+    public void setObstacleMap(ObstacleMap obstacles) {
+        this.obstacles = obstacles;
+        scheduler.requestFull();
+    }
+
+    /**
+     * Задаёт историю положений, по которой за роботами рисуются следы,
+     * или null, чтобы не рисовать следы
+     */
+    public void setTrajectoryHistory(TrajectoryHistory history) {
+        this.history = history;
+        dirty.setHistory(history);
+        if (tiles != null) {
+            tiles.setHistory(history);
+        }
+        scheduler.requestFull();
+    }
+
+    /**
+     * Задаёт робота, выделяемого на поле, или -1, чтобы снять выделение
+     */
+    public void setSelectedRobot(int robotId) {
+        setSelection(Selection.of(robotId));
+    }
+
+    /**
+     * Задаёт набор выделенных роботов
+     */
+    public void setSelection(Selection selection) {
+        this.selection = selection;
+        scheduler.requestFull();
+    }
+
+    public Selection getSelection() {
+        return selection;
+    }
+
+    /**
+     * Показывает рамку выделения между двумя экранными точками
+     * или убирает её, если band == null. Вызывается в EDT
+     */
+    public void setRubberBand(Rectangle band) {
+        Rectangle previous = rubberBand;
+        rubberBand = band;
+        if (previous != null) {
+            scheduler.request(previous.x, previous.y, previous.width + 1, previous.height + 1);
+        }
+        if (band != null) {
+            scheduler.request(band.x, band.y, band.width + 1, band.height + 1);
+        }
+    }
+
+    /**
+     * Останавливает планировщик кадров
+     */
+    public void stopRendering() {
+        scheduler.stop();
+        hud.stop();
+        if (tiles != null) {
+            tiles.shutdown();
+        }
+    }
+
+    public RenderScheduler getRenderScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Оверлей производительности; в него же пишутся замеры тиков
+     */
+    public PerformanceHud getHud() {
+        return hud;
+    }
+
+    /**
+     * Показывает или скрывает оверлей производительности. Вызывается в EDT
+     */
+    public void toggleHud() {
+        hud.setVisible(!hud.isVisible());
+        scheduler.request(hudBounds.x, hudBounds.y, hudBounds.width, hudBounds.height);
+    }
+
+    private void refreshHud() {
+        scheduler.request(hudBounds.x, hudBounds.y, hudBounds.width, hudBounds.height);
+    }
+
+    public Camera getCamera() {
+        return camera;
+    }
+
+    /**
+     * Сдвигает камеру на заданное число экранных пикселей
+     */
+    public void pan(int screenDx, int screenDy) {
+        camera.pan(screenDx, screenDy);
+        scheduler.requestFull();
+    }
+
+    /**
+     * Меняет масштаб на steps ступеней вокруг экранной точки
+     */
+    public void zoomAt(int screenX, int screenY, int steps) {
+        if (camera.zoomAt(screenX, screenY, steps)) {
+            scheduler.requestFull();
+        }
     }
 
     /**
-     * Рисует текущие координаты робота и точку цели
+     * Рисует кадр из планировщика: в активном режиме - целиком в холст,
+     * иначе сразу перерисовывает переданную область панели.
+     * В режиме плиток на уровне спрайтов кадр только заказывается,
+     * а выводится, когда плитки готовы
+     */
+    private void renderFrame(Rectangle area) {
+        if (tiles != null && camera.getDetail() == Camera.Detail.SPRITES) {
+            submitTiles();
+            return;
+        }
+        if (surface != null) {
+            surface.render(this::paintScene);
+        } else if (isShowing()) {
+            if (area == null) {
+                paintImmediately(0, 0, getWidth(), getHeight());
+            } else {
+                paintImmediately(area);
+            }
+        }
+    }
+
+    private void submitTiles() {
+        WorldSnapshot snapshot = world.acquireSnapshot();
+        if (snapshot == null) {
+            return;
+        }
+        ObstacleMap map = obstacles;
+        if (map != null) {
+            paintedObstacleVersion = map.getVersion();
+        }
+        if (!tiles.submit(snapshot, camera, getWidth(), getHeight(),
+                loop != null ? loop.getAlpha() : 1.0, selection, map)) {
+            snapshot.close();
+        }
+    }
+
+    /**
+     * Выводит готовый кадр из плиток и, если за время его построения
+     * пришли изменения, заказывает следующий
+     */
+    private void showTiledFrame() {
+        if (surface != null) {
+            surface.render(this::paintScene);
+        } else if (isShowing()) {
+            paintImmediately(0, 0, getWidth(), getHeight());
+        }
+        if (tiles.takePending()) {
+            scheduler.requestFull();
+        }
+    }
+
+    /**
+     * В активном режиме панель рисует только холст
      * @param g the <code>Graphics</code> object to protect
      */
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        drawRobot(g, model.getX(), model.getY(), model.getDirection());
-        drawTarget(g, model.getTargetX(), model.getTargetY());
+        if (surface == null) {
+            paintScene(g);
+        }
+    }
+
+    /**
+     * Рисует сцену, замеряет время кадра и поверх рисует оверлей производительности
+     */
+    private void paintScene(Graphics g) {
+        long start = System.nanoTime();
+        drawScene(g);
+        hud.recordFrame(start, System.nanoTime());
+        Rectangle band = rubberBand;
+        if (band != null) {
+            g.setColor(Color.BLUE);
+            g.drawRect(band.x, band.y, band.width, band.height);
+        }
+        if (hud.isVisible()) {
+            hud.draw(g);
+        }
+    }
+
+    /**
+     * Рисует текущие координаты роботов и их точки цели.
+     * Пока мир не опубликовал ни одного снимка, роботы не рисуются
+     */
+    private void drawScene(Graphics g) {
+        if (surface != null) {
+            Rectangle clip = g.getClipBounds();
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        }
+        if (tiles != null && camera.getDetail() == Camera.Detail.SPRITES && tiles.composite(g)) {
+            return;
+        }
+        Graphics2D field = (Graphics2D) g.create();
+        try {
+            double zoom = camera.getZoom();
+            field.scale(zoom, zoom);
+            field.translate(-camera.getOriginX(), -camera.getOriginY());
+            if (obstacles != null) {
+                paintedObstacleVersion = obstacles.getVersion();
+                drawObstacles(field, obstacles);
+            }
+            try (WorldSnapshot snapshot = world.acquireSnapshot()) {
+                if (snapshot != null) {
+                    drawRobots(g, field, snapshot);
+                }
+            }
+        } finally {
+            field.dispose();
+        }
+    }
+
+    /**
+     * Рисует роботов с детализацией, соответствующей масштабу камеры
+     * @param screen контекст в экранных координатах
+     * @param field контекст в координатах мира
+     */
+    private void drawRobots(Graphics screen, Graphics field, WorldSnapshot snapshot) {
+        double alpha = loop != null ? loop.getAlpha() : 1.0;
+        int width = getWidth();
+        int height = getHeight();
+        switch (camera.getDetail()) {
+            case SPRITES -> drawRobots(field, snapshot);
+            case POINTS -> raster.drawPoints(screen, snapshot, alpha, camera, width, height, selection);
+            case HEATMAP -> raster.drawHeatmap(screen, snapshot, camera, width, height);
+        }
+        Selection selected = selection;
+        if (camera.getDetail() != Camera.Detail.SPRITES && selected.size() <= MAX_SELECTION_MARKERS) {
+            screen.setColor(Color.BLUE);
+            for (int k = 0; k < selected.size(); k++) {
+                int id = selected.get(k);
+                if (id < snapshot.size()) {
+                    int x = (int) camera.toScreenX(lerp(snapshot.getPrevX(id), snapshot.getX(id), alpha));
+                    int y = (int) camera.toScreenY(lerp(snapshot.getPrevY(id), snapshot.getY(id), alpha));
+                    screen.drawOval(x - 6, y - 6, 12, 12);
+                }
+            }
+        }
+    }
+
+    private void drawRobots(Graphics g, WorldSnapshot snapshot) {
+        double alpha = loop != null ? loop.getAlpha() : 1.0;
+        int count = snapshot.size();
+        Rectangle clip = g.getClipBounds();
+        if (history != null) {
+            for (int i = 0; i < count; i++) {
+                double x = lerp(snapshot.getPrevX(i), snapshot.getX(i), alpha);
+                double y = lerp(snapshot.getPrevY(i), snapshot.getY(i), alpha);
+                if (trails.readBounds(history, i, x, y) && trails.intersects(clip)) {
+                    trails.draw(g, history, i, x, y);
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            double x = lerp(snapshot.getPrevX(i), snapshot.getX(i), alpha);
+            double y = lerp(snapshot.getPrevY(i), snapshot.getY(i), alpha);
+            if (isVisible(clip, x, y, ROBOT_RADIUS)) {
+                drawRobot(g, x, y, lerp(snapshot.getPrevDirection(i), snapshot.getDirection(i), alpha));
+            }
+            if (isVisible(clip, snapshot.getTargetX(i), snapshot.getTargetY(i), TARGET_RADIUS)) {
+                drawTarget(g, snapshot.getTargetX(i), snapshot.getTargetY(i));
+            }
+        }
+        Selection selected = selection;
+        for (int k = 0; k < selected.size(); k++) {
+            int id = selected.get(k);
+            if (id >= count) {
+                break;
+            }
+            double x = lerp(snapshot.getPrevX(id), snapshot.getX(id), alpha);
+            double y = lerp(snapshot.getPrevY(id), snapshot.getY(id), alpha);
+            if (isVisible(clip, x, y, ROBOT_RADIUS)) {
+                drawSelection(g, x, y);
+            }
+        }
+    }
+
+    /**
+     * Рисует занятые ячейки карты препятствий, попадающие в область отрисовки
+     */
+    static void drawObstacles(Graphics g, ObstacleMap map) {
+        Rectangle clip = g.getClipBounds();
+        double cell = map.getCellSize();
+        int size = (int) Math.ceil(cell);
+        int minX = Math.max(0, clip != null ? map.cellOf(clip.x) : 0);
+        int minY = Math.max(0, clip != null ? map.cellOf(clip.y) : 0);
+        int maxX = Math.min(map.getWidth() - 1, clip != null ? map.cellOf(clip.x + clip.width) : map.getWidth() - 1);
+        int maxY = Math.min(map.getHeight() - 1, clip != null ? map.cellOf(clip.y + clip.height) : map.getHeight() - 1);
+        g.setColor(Color.GRAY);
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                if (map.isBlocked(cx, cy)) {
+                    g.fillRect((int) (cx * cell), (int) (cy * cell), size, size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Обводит выбранного робота окружностью
+     */
+    static void drawSelection(Graphics g, double x, double y) {
+        g.setColor(Color.BLUE);
+        g.drawOval((int) x - 22, (int) y - 22, 44, 44);
     }
 
     /**
-     * Рисует модельку робота и указатель направления
+     * Попадает ли квадрат с центром (x, y) и заданным радиусом в область отрисовки
+     */
+    private static boolean isVisible(Rectangle clip, double x, double y, int radius) {
+        return clip == null
+                || (x + radius >= clip.x && x - radius <= clip.x + clip.width
+                && y + radius >= clip.y && y - radius <= clip.y + clip.height);
+    }
+
+    private static double lerp(double from, double to, double alpha) {
+        return from + (to - from) * alpha;
+    }
+
+    /**
+     * Рисует модельку робота и указатель направления одним копированием
+     * спрайта из атласа
      * @param g
      * @param x
      * @param y
      * @param direction
      */
     private void drawRobot(Graphics g, double x, double y, double direction) {
-        Graphics2D g2d = (Graphics2D) g.create();
-        g2d.translate(x, y);
-        g2d.rotate(direction);
-        g2d.setColor(Color.BLACK);
-        g2d.fillOval(-20, -5, 40, 10);
-        g2d.setColor(Color.WHITE);
-        g2d.fillOval(20 - 2, -2, 4, 4);
-        g2d.dispose();
+        sprites.draw((Graphics2D) g, x, y, direction);
+    }
+
+    /**
+     * При смене оформления атлас спрайтов строится заново
+     */
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        if (sprites != null) {
+            sprites.invalidate();
+        }
     }
 
     /**
@@ -54,7 +450,7 @@ public class GameVisualizer extends JPanel implements PropertyChangeListener {
      * @param targetX
      * @param targetY
      */
-    private void drawTarget(Graphics g, double targetX, double targetY) {
+    static void drawTarget(Graphics g, double targetX, double targetY) {
         g.setColor(Color.GREEN);
         int targetCenterX = (int) targetX;
         int targetCenterY = (int) targetY;
@@ -62,14 +458,66 @@ public class GameVisualizer extends JPanel implements PropertyChangeListener {
         g.fillOval(targetCenterX - 5, targetCenterY - 5, 10, 10);
     }
 
+    @Override
+    public void onRobotAdded(int robotId, double x, double y) {
+        dirty.robotAdded(robotId, x, y, 0, x, y);
+    }
+
     /**
-     * Обрабатывает событие изменения свойств модели,
-     * перерисовывает модель при изменении
-     * @param evt A PropertyChangeEvent object describing the event source
-     *          and the property that has changed.
+     * Отдельные сдвиги не перерисовываются: области всех изменений тика
+     * собираются и перерисовываются одним запросом в onTickCompleted
      */
     @Override
-    public void propertyChange(PropertyChangeEvent evt) {
-        repaint();
+    public void onPositionChanged(int robotId, double x, double y, double direction) {
+        dirty.robotMoved(robotId, x, y, direction, selection.contains(robotId));
+    }
+
+    @Override
+    public void onTargetChanged(int robotId, double targetX, double targetY) {
+        dirty.targetChanged(robotId, targetX, targetY);
+    }
+
+    /**
+     * Цели группы попадают в грязную область тика так же, как одиночные
+     */
+    @Override
+    public void onTargetsChanged(int[] robotIds, int count, double[] targets) {
+        for (int k = 0; k < count; k++) {
+            dirty.targetChanged(robotIds[k], targets[k * 2], targets[k * 2 + 1]);
+        }
+    }
+
+    /**
+     * Передаёт планировщику кадров объединение грязных областей тика,
+     * а при изменении карты препятствий - всё поле. Область анимируется
+     * в течение одного тика, чтобы кадры между тиками показывали интерполяцию
+     */
+    @Override
+    public void onTickCompleted(long tick, int movedCount) {
+        boolean changed = dirty.tickCompleted();
+        if (obstacles != null && obstacles.getVersion() != paintedObstacleVersion) {
+            scheduler.requestFull();
+        } else if (changed) {
+            animateDirty(loop != null ? loop.getTickNanos() : 0);
+        }
+        dirty.clear();
+    }
+
+    /**
+     * Переводит грязную область тика из координат мира в экранные
+     * по одному снимку камеры. На мелком масштабе область расширяется на ячейку тепловой карты,
+     * чтобы перерисовывались целые ячейки
+     */
+    private void animateDirty(long durationNanos) {
+        Camera.View view = camera.getView();
+        int pad = view.getDetail() == Camera.Detail.SPRITES ? 1 : DensityRaster.HEAT_CELL + 1;
+        int left = (int) Math.floor(view.toScreenX(dirty.getX())) - pad;
+        int top = (int) Math.floor(view.toScreenY(dirty.getY())) - pad;
+        int right = (int) Math.ceil(view.toScreenX(dirty.getX() + dirty.getWidth())) + pad;
+        int bottom = (int) Math.ceil(view.toScreenY(dirty.getY() + dirty.getHeight())) + pad;
+        if (right < 0 || bottom < 0 || left > getWidth() || top > getHeight()) {
+            return;
+        }
+        scheduler.animate(left, top, right - left, bottom - top, durationNanos);
     }
 }
\ No newline at end of file
@@ -0,0 +1,254 @@
+package view;
+
+import java.awt.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Оверлей с замерами производительности: частота кадров, время отрисовки кадра,
+ * время тика симуляции и задержка очереди событий EDT, а под ними - столбики
+ * времени последних кадров и тиков.
+ * Замеры пишутся в кольцевые буферы на массивах long фиксированного размера,
+ * текст собирается в переиспользуемый массив символов, поэтому оверлей
+ * ничего не выделяет на кадр. Пока оверлей показан, раз в {@value #PROBE_MILLIS} мс
+ * в EDT ставится пробное событие: время его ожидания и есть задержка очереди,
+ * а после него оверлей перерисовывается
+ */
+public class PerformanceHud {
+    private static final int PROBE_MILLIS = 100;
+    private static final int SAMPLES = 512;
+    private static final int BARS = 120;
+    private static final int LEFT = 8;
+    private static final int TOP = 8;
+    private static final int WIDTH = BARS * 2 + 16;
+    private static final int LINE = 14;
+    private static final int LINES = 4;
+    private static final int SPARKLINE = 30;
+    private static final int HEIGHT = LINES * LINE + 2 * (SPARKLINE + 6) + 10;
+    /**
+     * Время, которому соответствует полная высота столбика
+     */
+    private static final long SPARKLINE_NANOS = TimeUnit.MILLISECONDS.toNanos(33);
+    private static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(16) + 700_000;
+
+    /**
+     * Непрозрачный фон: полупрозрачная заливка в программном конвейере Java2D
+     * выделяет память на каждый вызов
+     */
+    private static final Color BACKGROUND = new Color(24, 24, 24);
+    private static final Color TEXT = Color.WHITE;
+    private static final Color FAST = new Color(80, 220, 80);
+    private static final Color SLOW = new Color(240, 200, 40);
+    private static final Color STALL = new Color(240, 60, 60);
+
+    private final Samples frameTimes = new Samples(SAMPLES);
+    private final Samples paintTimes = new Samples(SAMPLES);
+    private final Samples tickTimes = new Samples(SAMPLES);
+    private final Samples edtLatency = new Samples(SAMPLES);
+    private final char[] text = new char[64];
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("hud-probe").daemon(true).factory());
+    private final Runnable refresh;
+    private final Runnable probe = this::probeArrived;
+    private final Runnable postProbe = this::postProbe;
+    private ScheduledFuture<?> probes;
+    private volatile boolean visible;
+    private volatile boolean probeInFlight;
+    private volatile long probePosted;
+
+    /**
+     * @param refresh вызывается в EDT после каждой пробы, чтобы перерисовать оверлей
+     */
+    public PerformanceHud(Runnable refresh) {
+        this.refresh = refresh;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Показывает или скрывает оверлей; пробы EDT идут, только пока он показан.
+     * Вызывается в EDT
+     */
+    public void setVisible(boolean visible) {
+        if (this.visible == visible) {
+            return;
+        }
+        this.visible = visible;
+        if (visible) {
+            probes = timer.scheduleWithFixedDelay(postProbe, 0, PROBE_MILLIS, TimeUnit.MILLISECONDS);
+        } else if (probes != null) {
+            probes.cancel(false);
+            probes = null;
+        }
+    }
+
+    /**
+     * Останавливает поток проб
+     */
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Область экрана, которую занимает оверлей
+     */
+    public Rectangle getBounds() {
+        return new Rectangle(LEFT, TOP, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Замер отрисовки кадра. Вызывается в EDT
+     */
+    public void recordFrame(long startNanos, long endNanos) {
+        frameTimes.add(endNanos);
+        paintTimes.add(endNanos - startNanos);
+    }
+
+    /**
+     * Замер тика симуляции. Вызывается в потоке симуляции
+     */
+    public void recordTick(long nanos) {
+        tickTimes.add(nanos);
+    }
+
+    private void postProbe() {
+        if (probeInFlight) {
+            return;
+        }
+        probeInFlight = true;
+        probePosted = System.nanoTime();
+        EventQueue.invokeLater(probe);
+    }
+
+    private void probeArrived() {
+        edtLatency.add(System.nanoTime() - probePosted);
+        probeInFlight = false;
+        refresh.run();
+    }
+
+    /**
+     * Рисует оверлей в экранных координатах. Вызывается в EDT
+     */
+    public void draw(Graphics g) {
+        g.setColor(BACKGROUND);
+        g.fillRect(LEFT, TOP, WIDTH, HEIGHT);
+        g.setColor(TEXT);
+        int x = LEFT + 8;
+        int y = TOP + LINE;
+        drawLine(g, "FPS ", framesInLastSecond() * 10, x, y);
+        drawLine(g, "paint ms ", tenthsOfMillis(paintTimes.average(BARS)), x, y += LINE);
+        drawLine(g, "tick ms ", tenthsOfMillis(tickTimes.average(BARS)), x, y += LINE);
+        drawLine(g, "EDT ms ", tenthsOfMillis(edtLatency.latest()), x, y += LINE);
+        y += 6;
+        drawSparkline(g, paintTimes, x, y);
+        drawSparkline(g, tickTimes, x, y + SPARKLINE + 6);
+    }
+
+    private void drawLine(Graphics g, String label, long tenths, int x, int y) {
+        int length = label.length();
+        label.getChars(0, length, text, 0);
+        length = appendTenths(tenths, length);
+        g.drawChars(text, 0, length, x, y);
+    }
+
+    /**
+     * Столбики последних замеров слева направо от старых к новым,
+     * цвет - по бюджету кадра 60 Гц
+     */
+    private void drawSparkline(Graphics g, Samples samples, int x, int y) {
+        int bars = (int) Math.min(BARS, samples.size());
+        for (int i = 0; i < bars; i++) {
+            long value = samples.get(bars - 1 - i);
+            int height = (int) Math.min(SPARKLINE, Math.max(1, value * SPARKLINE / SPARKLINE_NANOS));
+            g.setColor(value <= FRAME_BUDGET_NANOS ? FAST : value <= 2 * FRAME_BUDGET_NANOS ? SLOW : STALL);
+            g.fillRect(x + i * 2, y + SPARKLINE - height, 2, height);
+        }
+    }
+
+    private int framesInLastSecond() {
+        long since = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+        int frames = 0;
+        long size = Math.min(frameTimes.size(), SAMPLES);
+        while (frames < size && frameTimes.get(frames) > since) {
+            frames++;
+        }
+        return frames;
+    }
+
+    private static long tenthsOfMillis(long nanos) {
+        return (nanos + 50_000) / 100_000;
+    }
+
+    /**
+     * Дописывает число десятых долей в виде "12.3"
+     * @return новая длина текста
+     */
+    private int appendTenths(long tenths, int position) {
+        long value = Math.max(0, tenths);
+        int digits = 2;
+        for (long rest = value / 100; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int end = Math.min(text.length, position + digits + 1);
+        int cursor = end - 1;
+        text[cursor--] = (char) ('0' + value % 10);
+        value /= 10;
+        text[cursor--] = '.';
+        do {
+            text[cursor--] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0 && cursor >= position);
+        return end;
+    }
+
+    /**
+     * Кольцо замеров с одним писателем. Читатель может увидеть слот,
+     * перезаписанный во время чтения, что для оверлея допустимо
+     */
+    private static final class Samples {
+        private final long[] values;
+        private volatile long count;
+
+        Samples(int capacity) {
+            values = new long[capacity];
+        }
+
+        void add(long value) {
+            long next = count;
+            values[(int) (next % values.length)] = value;
+            count = next + 1;
+        }
+
+        long size() {
+            return count;
+        }
+
+        /**
+         * @param age 0 - последний замер, 1 - предыдущий и так далее
+         */
+        long get(int age) {
+            return values[(int) ((count - 1 - age) % values.length)];
+        }
+
+        long latest() {
+            return count > 0 ? get(0) : 0;
+        }
+
+        long average(int last) {
+            int total = (int) Math.min(last, Math.min(count, values.length));
+            if (total == 0) {
+                return 0;
+            }
+            long sum = 0;
+            for (int i = 0; i < total; i++) {
+                sum += get(i);
+            }
+            return sum / total;
+        }
+    }
+}
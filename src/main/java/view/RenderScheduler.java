@@ -0,0 +1,207 @@
+package view;
+
+import java.awt.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Планировщик кадров с ограничением частоты.
+ * Запросы на перерисовку из любого потока объединяются в одну грязную область,
+ * и не чаще одного раза за период кадра в EDT рисуется один кадр с их объединением,
+ * сколько бы запросов ни пришло. Кроме разовых запросов есть анимируемая область:
+ * она перерисовывается каждым кадром до заданного момента, чтобы роботы
+ * плавно интерполировались между тиками. Когда запросов нет, поток планировщика спит
+ */
+public class RenderScheduler {
+    public static final double DEFAULT_FRAME_RATE = 60;
+    /**
+     * Системное свойство с частотой кадров; по умолчанию берётся частота
+     * обновления экрана, а если она неизвестна - {@value #DEFAULT_FRAME_RATE}
+     */
+    public static final String FRAME_RATE_PROPERTY = "robots.fps";
+
+    /**
+     * Получатель кадров, вызывается в EDT
+     */
+    public interface Target {
+        /**
+         * Рисует кадр
+         * @param area область, которую нужно перерисовать, или null для всего поля
+         */
+        void renderFrame(Rectangle area);
+    }
+
+    private final Target target;
+    private final long frameNanos;
+    private final ScheduledExecutorService timer;
+    private final Runnable dispatch = () -> EventQueue.invokeLater(this::frame);
+    private final Rectangle area = new Rectangle();
+
+    private final Object lock = new Object();
+    private int minX = Integer.MAX_VALUE;
+    private int minY = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE;
+    private int maxY = Integer.MIN_VALUE;
+    private boolean full;
+    private int animatedX;
+    private int animatedY;
+    private int animatedWidth;
+    private int animatedHeight;
+    private long animateUntil;
+    private boolean scheduled;
+    private boolean stopped;
+    private long lastFrame = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+    private long frames;
+    private long requests;
+
+    /**
+     * @param framesPerSecond наибольшая частота кадров
+     */
+    public RenderScheduler(Target target, double framesPerSecond) {
+        if (!(framesPerSecond > 0)) {
+            throw new IllegalArgumentException("Частота кадров должна быть положительной: " + framesPerSecond);
+        }
+        this.target = target;
+        this.frameNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond));
+        this.timer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("render-scheduler").daemon(true).factory());
+    }
+
+    /**
+     * Частота из свойства {@value #FRAME_RATE_PROPERTY}, иначе частота
+     * обновления основного экрана, иначе {@value #DEFAULT_FRAME_RATE}
+     */
+    public static double defaultFrameRate() {
+        Integer configured = Integer.getInteger(FRAME_RATE_PROPERTY);
+        if (configured != null && configured > 0) {
+            return configured;
+        }
+        if (!GraphicsEnvironment.isHeadless()) {
+            int refresh = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+            if (refresh != DisplayMode.REFRESH_RATE_UNKNOWN) {
+                return refresh;
+            }
+        }
+        return DEFAULT_FRAME_RATE;
+    }
+
+    /**
+     * Добавляет прямоугольник к области ближайшего кадра
+     */
+    public void request(int x, int y, int width, int height) {
+        synchronized (lock) {
+            requests++;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x + width - 1);
+            maxY = Math.max(maxY, y + height - 1);
+            schedule();
+        }
+    }
+
+    /**
+     * Запрашивает перерисовку всего поля в ближайшем кадре
+     */
+    public void requestFull() {
+        synchronized (lock) {
+            requests++;
+            full = true;
+            schedule();
+        }
+    }
+
+    /**
+     * Перерисовывает прямоугольник ближайшим кадром и затем каждым кадром
+     * в течение durationNanos. Заменяет предыдущую анимируемую область
+     */
+    public void animate(int x, int y, int width, int height, long durationNanos) {
+        synchronized (lock) {
+            requests++;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x + width - 1);
+            maxY = Math.max(maxY, y + height - 1);
+            animatedX = x;
+            animatedY = y;
+            animatedWidth = width;
+            animatedHeight = height;
+            animateUntil = System.nanoTime() + durationNanos;
+            schedule();
+        }
+    }
+
+    /**
+     * Останавливает поток планировщика; запросы после остановки игнорируются
+     */
+    public void stop() {
+        synchronized (lock) {
+            stopped = true;
+        }
+        timer.shutdownNow();
+    }
+
+    /**
+     * Количество нарисованных кадров
+     */
+    public long getFrameCount() {
+        synchronized (lock) {
+            return frames;
+        }
+    }
+
+    /**
+     * Количество запросов, объединённых в кадры
+     */
+    public long getRequestCount() {
+        synchronized (lock) {
+            return requests;
+        }
+    }
+
+    /**
+     * Ставит кадр в расписание, если он ещё не стоит.
+     * Вызывается под lock
+     */
+    private void schedule() {
+        if (scheduled || stopped) {
+            return;
+        }
+        scheduled = true;
+        long delay = Math.max(0, lastFrame + frameNanos - System.nanoTime());
+        timer.schedule(dispatch, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Забирает накопленную область и рисует кадр в EDT
+     */
+    private void frame() {
+        boolean wholeField;
+        synchronized (lock) {
+            long now = System.nanoTime();
+            scheduled = false;
+            lastFrame = now;
+            wholeField = full;
+            if (now - animateUntil < 0) {
+                minX = Math.min(minX, animatedX);
+                minY = Math.min(minY, animatedY);
+                maxX = Math.max(maxX, animatedX + animatedWidth - 1);
+                maxY = Math.max(maxY, animatedY + animatedHeight - 1);
+                schedule();
+            }
+            area.setBounds(minX, minY, maxX - minX + 1, maxY - minY + 1);
+            boolean empty = minX > maxX;
+            full = false;
+            minX = Integer.MAX_VALUE;
+            minY = Integer.MAX_VALUE;
+            maxX = Integer.MIN_VALUE;
+            maxY = Integer.MIN_VALUE;
+            if (empty && !wholeField) {
+                return;
+            }
+            frames++;
+        }
+        target.renderFrame(wholeField ? null : area);
+    }
+}
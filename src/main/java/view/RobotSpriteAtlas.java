@@ -0,0 +1,116 @@
+package view;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Атлас заранее нарисованных спрайтов робота для N квантованных направлений.
+ * Спрайты лежат сеткой в одном совместимом с экраном изображении, и робот
+ * рисуется одним копированием участка атласа без создания Graphics2D и поворотов.
+ * Атлас перестраивается при смене масштаба вывода или конфигурации экрана,
+ * а после смены оформления его нужно сбросить через {@link #invalidate()}.
+ * Используется только в EDT
+ */
+public class RobotSpriteAtlas {
+    public static final int DEFAULT_HEADINGS = 64;
+    /**
+     * Системное свойство с числом направлений атласа
+     */
+    public static final String HEADINGS_PROPERTY = "robots.sprite.headings";
+
+    /**
+     * Размер ячейки спрайта в логических пикселях: робот с указателем
+     * направления помещается в круг радиусом 22
+     */
+    private static final int CELL = 48;
+    private static final int HALF = CELL / 2;
+
+    private final int headings;
+    private final int columns;
+    private BufferedImage image;
+    private GraphicsConfiguration configuration;
+    private double scale;
+    private int cellPixels;
+
+    /**
+     * @param headings число направлений; угол робота округляется до ближайшего из них
+     */
+    public RobotSpriteAtlas(int headings) {
+        if (headings <= 0) {
+            throw new IllegalArgumentException("Число направлений должно быть положительным: " + headings);
+        }
+        this.headings = headings;
+        this.columns = (int) Math.ceil(Math.sqrt(headings));
+    }
+
+    /**
+     * Атлас с числом направлений из свойства {@value #HEADINGS_PROPERTY}
+     */
+    public static RobotSpriteAtlas fromSystemProperties() {
+        return new RobotSpriteAtlas(Math.max(1, Integer.getInteger(HEADINGS_PROPERTY, DEFAULT_HEADINGS)));
+    }
+
+    /**
+     * Сбрасывает атлас; он будет перестроен при следующей отрисовке
+     */
+    public void invalidate() {
+        image = null;
+    }
+
+    /**
+     * Рисует робота с центром (x, y) и направлением direction
+     */
+    public void draw(Graphics2D g, double x, double y, double direction) {
+        ensureImage(g);
+        int index = Math.floorMod(Math.round(direction * headings / (2 * Math.PI)), headings);
+        int sourceX = (index % columns) * cellPixels;
+        int sourceY = (index / columns) * cellPixels;
+        int left = (int) Math.round(x) - HALF;
+        int top = (int) Math.round(y) - HALF;
+        g.drawImage(image, left, top, left + CELL, top + CELL,
+                sourceX, sourceY, sourceX + cellPixels, sourceY + cellPixels, null);
+    }
+
+    public int getHeadings() {
+        return headings;
+    }
+
+    private void ensureImage(Graphics2D g) {
+        AffineTransform transform = g.getTransform();
+        double currentScale = Math.max(Math.abs(transform.getScaleX()), Math.abs(transform.getScaleY()));
+        GraphicsConfiguration currentConfiguration = g.getDeviceConfiguration();
+        if (image != null && currentScale == scale && currentConfiguration == configuration) {
+            return;
+        }
+        scale = currentScale;
+        configuration = currentConfiguration;
+        cellPixels = Math.max(1, (int) Math.ceil(CELL * scale));
+        int rows = (headings + columns - 1) / columns;
+        image = currentConfiguration.createCompatibleImage(columns * cellPixels, rows * cellPixels,
+                Transparency.BITMASK);
+        Graphics2D atlas = image.createGraphics();
+        try {
+            for (int i = 0; i < headings; i++) {
+                AffineTransform cell = new AffineTransform();
+                cell.translate((i % columns) * cellPixels + cellPixels / 2.0, (i / columns) * cellPixels + cellPixels / 2.0);
+                cell.scale(cellPixels / (double) CELL, cellPixels / (double) CELL);
+                cell.rotate(2 * Math.PI * i / headings);
+                atlas.setTransform(cell);
+                drawRobot(atlas);
+            }
+        } finally {
+            atlas.dispose();
+        }
+    }
+
+    /**
+     * Рисует модельку робота и указатель направления вокруг начала координат
+     */
+    private static void drawRobot(Graphics2D g) {
+        g.setColor(Color.BLACK);
+        g.fillOval(-20, -5, 40, 10);
+        g.setColor(Color.WHITE);
+        g.fillOval(20 - 2, -2, 4, 4);
+    }
+}
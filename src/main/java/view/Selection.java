@@ -0,0 +1,100 @@
+package view;
+
+import java.util.Arrays;
+
+/**
+ * Неизменяемый набор выделенных роботов: идентификаторы по возрастанию
+ * и битовая маска для проверки принадлежности за O(1).
+ * Изменения создают новый набор, поэтому его можно передавать из EDT
+ * в поток симуляции и потоки отрисовки без синхронизации
+ */
+public final class Selection {
+    public static final Selection EMPTY = new Selection(new int[0], 0);
+
+    private final int[] ids;
+    private final long[] bits;
+
+    private Selection(int[] sortedIds, int count) {
+        this.ids = sortedIds.length == count ? sortedIds : Arrays.copyOf(sortedIds, count);
+        int max = count > 0 ? sortedIds[count - 1] : -1;
+        this.bits = new long[(max >>> 6) + 1];
+        for (int id : ids) {
+            bits[id >>> 6] |= 1L << id;
+        }
+    }
+
+    /**
+     * Набор из одного робота или пустой набор при robotId < 0
+     */
+    public static Selection of(int robotId) {
+        return robotId < 0 ? EMPTY : new Selection(new int[] {robotId}, 1);
+    }
+
+    /**
+     * Набор из первых count элементов массива; повторы и отрицательные значения отбрасываются
+     */
+    public static Selection of(int[] robotIds, int count) {
+        int[] sorted = Arrays.copyOf(robotIds, count);
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int id : sorted) {
+            if (id >= 0 && (unique == 0 || sorted[unique - 1] != id)) {
+                sorted[unique++] = id;
+            }
+        }
+        return new Selection(sorted, unique);
+    }
+
+    /**
+     * Объединение с первыми count элементами массива
+     */
+    public Selection with(int[] robotIds, int count) {
+        int[] merged = Arrays.copyOf(ids, ids.length + count);
+        System.arraycopy(robotIds, 0, merged, ids.length, count);
+        return of(merged, merged.length);
+    }
+
+    /**
+     * Набор, в котором робот добавлен, если его не было, или убран, если был
+     */
+    public Selection toggle(int robotId) {
+        if (!contains(robotId)) {
+            return with(new int[] {robotId}, 1);
+        }
+        int[] rest = new int[ids.length - 1];
+        int count = 0;
+        for (int id : ids) {
+            if (id != robotId) {
+                rest[count++] = id;
+            }
+        }
+        return new Selection(rest, count);
+    }
+
+    public boolean contains(int robotId) {
+        int word = robotId >>> 6;
+        return robotId >= 0 && word < bits.length && (bits[word] & (1L << robotId)) != 0;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    /**
+     * @param index от 0 до size() - 1, по возрастанию идентификаторов
+     */
+    public int get(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Копия идентификаторов по возрастанию
+     */
+    public int[] toArray() {
+        return ids.clone();
+    }
+}
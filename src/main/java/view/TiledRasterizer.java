@@ -0,0 +1,367 @@
+package view;
+
+import model.ObstacleMap;
+import model.TrajectoryHistory;
+import model.WorldSnapshot;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Многопоточная отрисовка кадра плитками.
+ * Видимая область делится на плитки {@value #TILE}x{@value #TILE} пикселей;
+ * роботы раскладываются по плиткам, которые задевают они сами или их цели,
+ * и каждая плитка рисуется своим потоком в собственное изображение int ARGB
+ * в том же порядке, что и при обычной отрисовке: препятствия, следы, роботы с целями,
+ * выделение. Следы раскладываются отдельно, по плиткам, которые задевает
+ * описанный прямоугольник следа из истории положений.
+ * EDT только выводит плитки последнего готового кадра, поэтому остаётся
+ * отзывчивым, пока следующий кадр строится на других ядрах.
+ * Кадров два: показываемый и строящийся. Их смена и запуск построения
+ * происходят в EDT, поэтому показываемый кадр никогда не перезаписывается
+ */
+final class TiledRasterizer {
+    static final int TILE = 128;
+
+    private final ForkJoinPool pool;
+    private final Runnable frameReady;
+    private final ThreadLocal<RobotSpriteAtlas> sprites =
+            ThreadLocal.withInitial(RobotSpriteAtlas::fromSystemProperties);
+    private final ThreadLocal<TrailPainter> trails = ThreadLocal.withInitial(TrailPainter::new);
+    private volatile TrajectoryHistory history;
+    private Frame front = new Frame();
+    private Frame back = new Frame();
+    private boolean building;
+    private boolean pending;
+
+    /**
+     * @param threads число потоков отрисовки
+     * @param frameReady вызывается в EDT, когда готов новый кадр
+     */
+    TiledRasterizer(int threads, Runnable frameReady) {
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+        this.frameReady = frameReady;
+    }
+
+    /**
+     * Задаёт историю положений, по которой рисуются следы, или null
+     */
+    void setHistory(TrajectoryHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Запускает построение кадра, а если кадр уже строится - запоминает,
+     * что после него нужен ещё один. Вызывается в EDT
+     * @return true, если построение запущено; иначе снимок нужно отпустить
+     */
+    boolean submit(WorldSnapshot snapshot, Camera camera, int width, int height, double alpha,
+                   Selection selection, ObstacleMap obstacles) {
+        if (building) {
+            pending = true;
+            return false;
+        }
+        building = true;
+        Frame frame = back;
+        frame.prepare(camera, width, height, alpha, selection, history);
+        pool.execute(() -> {
+            try {
+                build(frame, snapshot, obstacles);
+            } finally {
+                snapshot.close();
+                EventQueue.invokeLater(() -> built(frame));
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Нужен ли ещё один кадр после строящегося; флаг сбрасывается
+     */
+    boolean takePending() {
+        boolean result = pending;
+        pending = false;
+        return result;
+    }
+
+    /**
+     * Выводит плитки последнего готового кадра. Вызывается в EDT
+     * @return false, если готового кадра ещё нет
+     */
+    boolean composite(Graphics g) {
+        Frame frame = front;
+        if (!frame.ready) {
+            return false;
+        }
+        for (int row = 0; row < frame.rows; row++) {
+            for (int column = 0; column < frame.columns; column++) {
+                g.drawImage(frame.tiles[row * frame.columns + column], column * TILE, row * TILE, null);
+            }
+        }
+        return true;
+    }
+
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void built(Frame frame) {
+        building = false;
+        if (frame.ready) {
+            back = front;
+            front = frame;
+        }
+        frameReady.run();
+    }
+
+    /**
+     * Раскладывает роботов и цели по плиткам и рисует плитки параллельно
+     */
+    private void build(Frame frame, WorldSnapshot snapshot, ObstacleMap obstacles) {
+        frame.ready = false;
+        frame.bin(snapshot);
+        frame.binTrails(snapshot, trails.get());
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(frame.tiles.length);
+        for (int tile = 0; tile < frame.tiles.length; tile++) {
+            int index = tile;
+            tasks.add(ForkJoinTask.adapt(() -> drawTile(frame, index, snapshot, obstacles)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        frame.ready = true;
+    }
+
+    private void drawTile(Frame frame, int tile, WorldSnapshot snapshot, ObstacleMap obstacles) {
+        BufferedImage image = frame.tiles[tile];
+        Arrays.fill(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), 0);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setClip(0, 0, TILE, TILE);
+            g.translate(-(tile % frame.columns) * TILE, -(tile / frame.columns) * TILE);
+            g.scale(frame.zoom, frame.zoom);
+            g.translate(-frame.originX, -frame.originY);
+            if (obstacles != null) {
+                GameVisualizer.drawObstacles(g, obstacles);
+            }
+            double alpha = frame.alpha;
+            TrajectoryHistory trailHistory = frame.history;
+            if (trailHistory != null) {
+                TrailPainter painter = trails.get();
+                for (int k = frame.trailStart[tile]; k < frame.trailStart[tile + 1]; k++) {
+                    int i = frame.trailIds[k];
+                    painter.draw(g, trailHistory, i,
+                            lerp(snapshot.getPrevX(i), snapshot.getX(i), alpha),
+                            lerp(snapshot.getPrevY(i), snapshot.getY(i), alpha));
+                }
+            }
+            RobotSpriteAtlas atlas = sprites.get();
+            for (int k = frame.start[tile]; k < frame.start[tile + 1]; k++) {
+                int i = frame.ids[k];
+                atlas.draw(g,
+                        lerp(snapshot.getPrevX(i), snapshot.getX(i), alpha),
+                        lerp(snapshot.getPrevY(i), snapshot.getY(i), alpha),
+                        lerp(snapshot.getPrevDirection(i), snapshot.getDirection(i), alpha));
+                GameVisualizer.drawTarget(g, snapshot.getTargetX(i), snapshot.getTargetY(i));
+            }
+            Selection selection = frame.selection;
+            if (!selection.isEmpty()) {
+                for (int k = frame.start[tile]; k < frame.start[tile + 1]; k++) {
+                    int i = frame.ids[k];
+                    if (selection.contains(i)) {
+                        GameVisualizer.drawSelection(g,
+                                lerp(snapshot.getPrevX(i), snapshot.getX(i), alpha),
+                                lerp(snapshot.getPrevY(i), snapshot.getY(i), alpha));
+                    }
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private static double lerp(double from, double to, double alpha) {
+        return from + (to - from) * alpha;
+    }
+
+    /**
+     * Плитки кадра, параметры камеры, с которыми он строится,
+     * и списки роботов по плиткам (подсчётом и префиксными суммами)
+     */
+    private static final class Frame {
+        BufferedImage[] tiles = new BufferedImage[0];
+        int columns;
+        int rows;
+        double originX;
+        double originY;
+        double zoom;
+        double alpha;
+        Selection selection = Selection.EMPTY;
+        TrajectoryHistory history;
+        volatile boolean ready;
+
+        int[] start = new int[1];
+        int[] ids = new int[0];
+        private int[] fill = new int[0];
+
+        int[] trailStart = new int[1];
+        int[] trailIds = new int[0];
+        /**
+         * Диапазон плиток следа каждого робота: minColumn, maxColumn, minRow, maxRow
+         */
+        private int[] trailTiles = new int[0];
+
+        void prepare(Camera camera, int width, int height, double alpha, Selection selection,
+                     TrajectoryHistory history) {
+            originX = camera.getOriginX();
+            originY = camera.getOriginY();
+            zoom = camera.getZoom();
+            this.alpha = alpha;
+            this.selection = selection;
+            this.history = history;
+            int newColumns = Math.max(1, (width + TILE - 1) / TILE);
+            int newRows = Math.max(1, (height + TILE - 1) / TILE);
+            if (newColumns != columns || newRows != rows) {
+                columns = newColumns;
+                rows = newRows;
+                tiles = new BufferedImage[columns * rows];
+                for (int i = 0; i < tiles.length; i++) {
+                    tiles[i] = new BufferedImage(TILE, TILE, BufferedImage.TYPE_INT_ARGB);
+                }
+                start = new int[tiles.length + 1];
+                fill = new int[tiles.length];
+                trailStart = new int[tiles.length + 1];
+            }
+        }
+
+        void bin(WorldSnapshot snapshot) {
+            int count = snapshot.size();
+            Arrays.fill(start, 0);
+            for (int i = 0; i < count; i++) {
+                visit(snapshot, i, start, null, 1);
+            }
+            for (int i = 1; i < start.length; i++) {
+                start[i] += start[i - 1];
+            }
+            int total = start[start.length - 1];
+            if (ids.length < total) {
+                ids = new int[Math.max(total, ids.length * 2)];
+            }
+            System.arraycopy(start, 0, fill, 0, fill.length);
+            for (int i = 0; i < count; i++) {
+                visit(snapshot, i, fill, ids, 0);
+            }
+        }
+
+        /**
+         * Раскладывает следы по плиткам. Прямоугольник следа читается
+         * из истории один раз, чтобы подсчёт и раскладка совпали,
+         * хотя история продолжает пополняться в потоке симуляции
+         */
+        void binTrails(WorldSnapshot snapshot, TrailPainter painter) {
+            Arrays.fill(trailStart, 0);
+            if (history == null) {
+                return;
+            }
+            int count = snapshot.size();
+            if (trailTiles.length < count * 4) {
+                trailTiles = new int[count * 4];
+            }
+            for (int i = 0; i < count; i++) {
+                double x = lerp(snapshot.getPrevX(i), snapshot.getX(i), alpha);
+                double y = lerp(snapshot.getPrevY(i), snapshot.getY(i), alpha);
+                int minColumn = 0;
+                int maxColumn = -1;
+                int minRow = 0;
+                int maxRow = -1;
+                if (painter.readBounds(history, i, x, y)) {
+                    minColumn = Math.max(0, column((painter.getMinX() - originX) * zoom));
+                    maxColumn = Math.min(columns - 1, column((painter.getMaxX() - originX) * zoom));
+                    minRow = Math.max(0, row((painter.getMinY() - originY) * zoom));
+                    maxRow = Math.min(rows - 1, row((painter.getMaxY() - originY) * zoom));
+                }
+                trailTiles[i * 4] = minColumn;
+                trailTiles[i * 4 + 1] = maxColumn;
+                trailTiles[i * 4 + 2] = minRow;
+                trailTiles[i * 4 + 3] = maxRow;
+                for (int row = minRow; row <= maxRow; row++) {
+                    for (int column = minColumn; column <= maxColumn; column++) {
+                        trailStart[row * columns + column + 1]++;
+                    }
+                }
+            }
+            for (int i = 1; i < trailStart.length; i++) {
+                trailStart[i] += trailStart[i - 1];
+            }
+            int total = trailStart[trailStart.length - 1];
+            if (trailIds.length < total) {
+                trailIds = new int[Math.max(total, trailIds.length * 2)];
+            }
+            System.arraycopy(trailStart, 0, fill, 0, fill.length);
+            for (int i = 0; i < count; i++) {
+                for (int row = trailTiles[i * 4 + 2]; row <= trailTiles[i * 4 + 3]; row++) {
+                    for (int column = trailTiles[i * 4]; column <= trailTiles[i * 4 + 1]; column++) {
+                        trailIds[fill[row * columns + column]++] = i;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Обходит плитки, которые задевают робот или его цель, по одному разу:
+         * при ids == null считает их в counts[tile + shift], иначе записывает
+         * робота в ids по позиции counts[tile] и сдвигает её
+         */
+        private void visit(WorldSnapshot snapshot, int id, int[] counts, int[] ids, int shift) {
+            double robotRadius = GameVisualizer.ROBOT_RADIUS * zoom;
+            double x = (lerp(snapshot.getPrevX(id), snapshot.getX(id), alpha) - originX) * zoom;
+            double y = (lerp(snapshot.getPrevY(id), snapshot.getY(id), alpha) - originY) * zoom;
+            int minColumn = column(x - robotRadius);
+            int maxColumn = column(x + robotRadius);
+            int minRow = row(y - robotRadius);
+            int maxRow = row(y + robotRadius);
+            add(counts, ids, id, shift, minColumn, maxColumn, minRow, maxRow, 0, -1, 0, -1);
+
+            double targetRadius = GameVisualizer.TARGET_RADIUS * zoom;
+            double targetX = (snapshot.getTargetX(id) - originX) * zoom;
+            double targetY = (snapshot.getTargetY(id) - originY) * zoom;
+            add(counts, ids, id, shift, column(targetX - targetRadius), column(targetX + targetRadius),
+                    row(targetY - targetRadius), row(targetY + targetRadius),
+                    minColumn, maxColumn, minRow, maxRow);
+        }
+
+        /**
+         * Добавляет робота в плитки прямоугольника, кроме уже учтённых в прямоугольнике skip
+         */
+        private void add(int[] counts, int[] ids, int id, int shift,
+                         int minColumn, int maxColumn, int minRow, int maxRow,
+                         int skipMinColumn, int skipMaxColumn, int skipMinRow, int skipMaxRow) {
+            for (int row = Math.max(0, minRow); row <= Math.min(rows - 1, maxRow); row++) {
+                for (int column = Math.max(0, minColumn); column <= Math.min(columns - 1, maxColumn); column++) {
+                    if (column >= skipMinColumn && column <= skipMaxColumn
+                            && row >= skipMinRow && row <= skipMaxRow) {
+                        continue;
+                    }
+                    int tile = row * columns + column;
+                    if (ids == null) {
+                        counts[tile + shift]++;
+                    } else {
+                        ids[counts[tile]++] = id;
+                    }
+                }
+            }
+        }
+
+        private static int column(double screenX) {
+            return (int) Math.floor(screenX / TILE);
+        }
+
+        private static int row(double screenY) {
+            return (int) Math.floor(screenY / TILE);
+        }
+    }
+}
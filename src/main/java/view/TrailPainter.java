@@ -0,0 +1,87 @@
+package view;
+
+import model.TrajectoryHistory;
+
+import java.awt.*;
+
+/**
+ * Рисование следов роботов по истории положений с переиспользуемыми буферами точек.
+ * Один экземпляр используется одним потоком: EDT заводит свой,
+ * потоки плиточной отрисовки - по одному на поток
+ */
+final class TrailPainter {
+    /**
+     * Запас вокруг следа на округление точек и толщину линии при масштабе до 1/2
+     */
+    static final int PAD = 3;
+
+    private final double[] bounds = new double[4];
+    private double[] points = new double[0];
+    private int[] xs = new int[0];
+    private int[] ys = new int[0];
+
+    /**
+     * Читает прямоугольник следа робота вместе с его текущим положением и запасом {@link #PAD}
+     * @return false, если у робота нет следа
+     */
+    boolean readBounds(TrajectoryHistory history, int robotId, double x, double y) {
+        if (!history.readBounds(robotId, bounds)) {
+            return false;
+        }
+        bounds[0] = Math.min(bounds[0], x) - PAD;
+        bounds[1] = Math.min(bounds[1], y) - PAD;
+        bounds[2] = Math.max(bounds[2], x) + PAD;
+        bounds[3] = Math.max(bounds[3], y) + PAD;
+        return true;
+    }
+
+    double getMinX() {
+        return bounds[0];
+    }
+
+    double getMinY() {
+        return bounds[1];
+    }
+
+    double getMaxX() {
+        return bounds[2];
+    }
+
+    double getMaxY() {
+        return bounds[3];
+    }
+
+    /**
+     * Пересекает ли прямоугольник последнего {@link #readBounds} область отрисовки
+     */
+    boolean intersects(Rectangle clip) {
+        return clip == null
+                || (bounds[2] >= clip.x && bounds[0] <= clip.x + clip.width
+                && bounds[3] >= clip.y && bounds[1] <= clip.y + clip.height);
+    }
+
+    /**
+     * Рисует след робота по сохранённым точкам истории
+     * и отрезок от последней точки до текущего положения
+     */
+    void draw(Graphics g, TrajectoryHistory history, int robotId, double x, double y) {
+        int capacity = history.getCapacity();
+        if (points.length < capacity * 2) {
+            points = new double[capacity * 2];
+            xs = new int[capacity + 1];
+            ys = new int[capacity + 1];
+        }
+        int count = history.read(robotId, points);
+        if (count == 0) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            xs[i] = (int) points[i * 2];
+            ys[i] = (int) points[i * 2 + 1];
+        }
+        xs[count] = (int) x;
+        ys[count] = (int) y;
+        g.setColor(Color.LIGHT_GRAY);
+        g.drawPolyline(xs, ys, count + 1);
+    }
+}